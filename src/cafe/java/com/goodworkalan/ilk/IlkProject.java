@@ -22,6 +22,8 @@ public class IlkProject implements ProjectModule {
                 .produces("com.github.bigeasy.ilk/ilk/0.1.0.13")
                 .depends()
                     .development("org.testng/testng-jdk15/5.10")
+                    .development("org.openjdk.jmh/jmh-core/1.37")
+                    .development("org.openjdk.jmh/jmh-generator-annprocess/1.37")
                     .end()
                 .end()
             .end();
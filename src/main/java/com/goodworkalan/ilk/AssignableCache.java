@@ -0,0 +1,298 @@
+package com.goodworkalan.ilk;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache of the results of
+ * {@link Types#isAssignableFrom(java.lang.reflect.Type, java.lang.reflect.Type)
+ * Types.isAssignableFrom} keyed on the pair of keys tested.
+ * <p>
+ * The cache used by {@link Ilk.Key#isAssignableFrom(Ilk.Key)
+ * Ilk.Key.isAssignableFrom} is set using {@link #setInstance(AssignableCache)
+ * setInstance}. Applications can plug in their own cache by subclassing this
+ * class and overriding {@link #isAssignableFrom(Ilk.Key, Ilk.Key)
+ * isAssignableFrom}, or disable caching by setting the instance to
+ * <code>null</code>.
+ * <p>
+ * The cache is bounded. When the number of cached results exceeds the
+ * maximum size the cache is cleared, since the set of keys tested by an
+ * application is usually small and stable, and a simple clear is cheaper than
+ * tracking recency on every lookup.
+ * <p>
+ * The cache holds its keys weakly, so that it does not prevent the classes
+ * of the types it has tested from being unloaded. A result is cached for the
+ * canonical instances of the keys tested, and is removed once either of the
+ * canonical keys is collected. The canonical key of an anonymous subclass of
+ * <code>Ilk</code> lives as long as the subclass, so results for the keys of
+ * super type tokens stay cached while their classes are loaded.
+ *
+ * @author Alan Gutierrez
+ */
+public class AssignableCache {
+    /** The default maximum number of cached results. */
+    public static final int DEFAULT_MAXIMUM_SIZE = 4096;
+
+    /** The cache used by <code>Ilk.Key</code>. */
+    private static volatile AssignableCache instance = new AssignableCache(DEFAULT_MAXIMUM_SIZE);
+
+    /** The cached results. */
+    private final ConcurrentMap<Pair, Boolean> results = new ConcurrentHashMap<Pair, Boolean>();
+
+    /** The maximum number of cached results. */
+    private final int maximumSize;
+
+    /** The number of tests answered from the cache. */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /** The number of tests that had to be calculated. */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /** The queue of references to collected keys. */
+    private final ReferenceQueue<Ilk.Key> collected = new ReferenceQueue<Ilk.Key>();
+
+    /**
+     * Create an assignability cache that holds at most the given number of
+     * results.
+     *
+     * @param maximumSize
+     *            The maximum number of cached results.
+     */
+    public AssignableCache(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Get the cache used by <code>Ilk.Key</code> to test assignability.
+     *
+     * @return The cache or <code>null</code> if assignability is not cached.
+     */
+    public static AssignableCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Set the cache used by <code>Ilk.Key</code> to test assignability.
+     *
+     * @param cache
+     *            The cache or <code>null</code> to disable caching.
+     */
+    public static void setInstance(AssignableCache cache) {
+        instance = cache;
+    }
+
+    /**
+     * Determine if the type of the <code>from</code> key can be assigned to
+     * the type of the <code>to</code> key, returning a cached result if the
+     * pair has been tested before.
+     *
+     * @param to
+     *            The key to assign to.
+     * @param from
+     *            The key to assign from.
+     * @return True if the type of the from key can be assigned to the type of
+     *         the to key.
+     */
+    public boolean isAssignableFrom(Ilk.Key to, Ilk.Key from) {
+        Boolean assignable = results.get(new Pair(to, from));
+        if (assignable == null) {
+            missCount.incrementAndGet();
+            assignable = Types.isAssignableFrom(to.type, from.type);
+            expunge();
+            if (results.size() >= maximumSize) {
+                results.clear();
+            }
+            results.put(new Pair(to.intern(), from.intern(), collected), assignable);
+        } else {
+            hitCount.incrementAndGet();
+        }
+        return assignable;
+    }
+
+    /**
+     * Remove the results whose keys have been collected.
+     */
+    private void expunge() {
+        PairReference reference;
+        while ((reference = (PairReference) collected.poll()) != null) {
+            results.remove(reference.pair);
+        }
+    }
+
+    /**
+     * Get the number of tests answered from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of tests that were not cached and had to be calculated.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Get the number of cached results.
+     *
+     * @return The number of cached results.
+     */
+    public int size() {
+        return results.size();
+    }
+
+    /** Remove all of the cached results and reset the counters. */
+    public void clear() {
+        results.clear();
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    /**
+     * A weak reference to a key of a cached pair that finds the pair to
+     * remove when the key is collected.
+     *
+     * @author Alan Gutierrez
+     */
+    private final static class PairReference extends WeakReference<Ilk.Key> {
+        /** The cached pair. */
+        public final Pair pair;
+
+        /**
+         * Create a weak reference to the given key of the given pair.
+         *
+         * @param key
+         *            The key.
+         * @param pair
+         *            The cached pair.
+         * @param queue
+         *            The queue of references to collected keys.
+         */
+        public PairReference(Ilk.Key key, Pair pair, ReferenceQueue<Ilk.Key> queue) {
+            super(key, queue);
+            this.pair = pair;
+        }
+    }
+
+    /**
+     * A pair of keys whose combined hash code is calculated at construction.
+     * A pair used to look up a result holds its keys strongly, and a cached
+     * pair holds its keys weakly.
+     *
+     * @author Alan Gutierrez
+     */
+    private final static class Pair {
+        /** The key to assign to, or null for a cached pair. */
+        private final Ilk.Key to;
+
+        /** The key to assign from, or null for a cached pair. */
+        private final Ilk.Key from;
+
+        /** The weak reference to the key to assign to of a cached pair. */
+        private final PairReference weakTo;
+
+        /** The weak reference to the key to assign from of a cached pair. */
+        private final PairReference weakFrom;
+
+        /** The combined hash code. */
+        private final int hashCode;
+
+        /**
+         * Create a pair of keys to look up a result.
+         *
+         * @param to
+         *            The key to assign to.
+         * @param from
+         *            The key to assign from.
+         */
+        public Pair(Ilk.Key to, Ilk.Key from) {
+            this.to = to;
+            this.from = from;
+            this.weakTo = null;
+            this.weakFrom = null;
+            this.hashCode = to.hashCode() * 37 ^ from.hashCode();
+        }
+
+        /**
+         * Create a pair of keys to cache a result that references the keys
+         * weakly.
+         *
+         * @param to
+         *            The key to assign to.
+         * @param from
+         *            The key to assign from.
+         * @param queue
+         *            The queue of references to collected keys.
+         */
+        public Pair(Ilk.Key to, Ilk.Key from, ReferenceQueue<Ilk.Key> queue) {
+            this.to = null;
+            this.from = null;
+            this.weakTo = new PairReference(to, this, queue);
+            this.weakFrom = new PairReference(from, this, queue);
+            this.hashCode = to.hashCode() * 37 ^ from.hashCode();
+        }
+
+        /**
+         * Get the key to assign to.
+         *
+         * @return The key or null if it has been collected.
+         */
+        private Ilk.Key getTo() {
+            return weakTo == null ? to : weakTo.get();
+        }
+
+        /**
+         * Get the key to assign from.
+         *
+         * @return The key or null if it has been collected.
+         */
+        private Ilk.Key getFrom() {
+            return weakFrom == null ? from : weakFrom.get();
+        }
+
+        /**
+         * A pair is equal to another pair if both keys are equal.
+         *
+         * @param object
+         *            The object to test for equality.
+         * @return True if the object is an equal pair.
+         */
+        @Override
+        public boolean equals(Object object) {
+            if (object == this) {
+                return true;
+            }
+            if (object instanceof Pair) {
+                Pair pair = (Pair) object;
+                if (hashCode != pair.hashCode) {
+                    return false;
+                }
+                Ilk.Key to = getTo();
+                Ilk.Key from = getFrom();
+                return to != null && from != null && to.equals(pair.getTo()) && from.equals(pair.getFrom());
+            }
+            return false;
+        }
+
+        /**
+         * Return the combined hash code of the keys.
+         *
+         * @return The hash code.
+         */
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
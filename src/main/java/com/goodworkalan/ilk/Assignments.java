@@ -0,0 +1,241 @@
+package com.goodworkalan.ilk;
+
+import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The types assigned to type variables, used to substitute actual types for
+ * the type variables of a generic type.
+ * <p>
+ * Assignments are usually held in {@link Slots}, where the type parameters of
+ * each generic declaration are numbered by their position and the assigned
+ * types are stored in a flat array. A type variable is found by comparing its
+ * generic declaration by identity against the few declarations of the table
+ * and then comparing its name against the names of the type parameters of the
+ * declaration, so no <code>TypeVariable</code> is ever hashed. The
+ * assignments given as a map to the public methods of {@link Types} are
+ * adapted with {@link #of(Map)}.
+ *
+ * @author Alan Gutierrez
+ */
+abstract class Assignments {
+    /**
+     * Get the type assigned to the given type variable.
+     *
+     * @param variable
+     *            The type variable.
+     * @return The assigned type or null if the type variable is not assigned.
+     */
+    public abstract Type get(TypeVariable<?> variable);
+
+    /**
+     * Adapt the given map of type variable assignments.
+     *
+     * @param map
+     *            The map of type variables to their assigned types.
+     * @return The assignments.
+     */
+    public static Assignments of(Map<TypeVariable<?>, Type> map) {
+        return new MapAssignments(map);
+    }
+
+    /**
+     * Create assignments that assign the given type to the given type
+     * variable.
+     *
+     * @param variable
+     *            The type variable.
+     * @param type
+     *            The assigned type.
+     * @return The assignments.
+     */
+    public static Assignments of(TypeVariable<?> variable, Type type) {
+        GenericDeclaration declaration = variable.getGenericDeclaration();
+        Layout layout = new Layout(new GenericDeclaration[] { declaration }, new TypeVariable<?>[][] { declaration.getTypeParameters() });
+        Slots slots = new Slots(layout);
+        int slot = layout.getSlot(variable);
+        if (slot == -1) {
+            throw new IllegalArgumentException("Type variable " + variable.getName() + " is not declared by " + declaration);
+        }
+        slots.values[slot] = type;
+        return slots;
+    }
+
+    /**
+     * Assignments adapted from a map of type variables to their assigned
+     * types.
+     *
+     * @author Alan Gutierrez
+     */
+    private final static class MapAssignments extends Assignments {
+        /** The map of type variables to their assigned types. */
+        private final Map<TypeVariable<?>, Type> map;
+
+        /**
+         * Adapt the given map.
+         *
+         * @param map
+         *            The map of type variables to their assigned types.
+         */
+        public MapAssignments(Map<TypeVariable<?>, Type> map) {
+            this.map = map;
+        }
+
+        /**
+         * Get the type assigned to the given type variable from the map.
+         *
+         * @param variable
+         *            The type variable.
+         * @return The assigned type or null if the type variable is not
+         *         assigned.
+         */
+        @Override
+        public Type get(TypeVariable<?> variable) {
+            return map.get(variable);
+        }
+    }
+
+    /**
+     * The numbering of the type parameters of a list of generic declarations.
+     * The type parameters of each declaration occupy consecutive slots in the
+     * order in which they are declared. A layout is immutable and is shared by
+     * every slot table created for the same hierarchy.
+     *
+     * @author Alan Gutierrez
+     */
+    final static class Layout {
+        /** The generic declarations. */
+        final GenericDeclaration[] declarations;
+
+        /** The type parameters of each generic declaration. */
+        final TypeVariable<?>[][] parameters;
+
+        /** The slot of the first type parameter of each generic declaration. */
+        private final int[] offsets;
+
+        /** The number of slots. */
+        final int size;
+
+        /**
+         * Create a layout for the given generic declarations and their type
+         * parameters.
+         *
+         * @param declarations
+         *            The generic declarations.
+         * @param parameters
+         *            The type parameters of each generic declaration.
+         */
+        public Layout(GenericDeclaration[] declarations, TypeVariable<?>[][] parameters) {
+            this.declarations = declarations;
+            this.parameters = parameters;
+            this.offsets = new int[declarations.length];
+            int size = 0;
+            for (int i = 0; i < declarations.length; i++) {
+                offsets[i] = size;
+                size += parameters[i].length;
+            }
+            this.size = size;
+        }
+
+        /**
+         * Get the slot of the given type variable.
+         *
+         * @param variable
+         *            The type variable.
+         * @return The slot or -1 if the type variable is not declared by any
+         *         of the generic declarations of this layout.
+         */
+        public int getSlot(TypeVariable<?> variable) {
+            GenericDeclaration declaration = variable.getGenericDeclaration();
+            for (int i = 0; i < declarations.length; i++) {
+                // Classes are compared by identity, methods and constructors
+                // are copied by reflection and must be compared by equality.
+                if (declarations[i] == declaration || (!(declaration instanceof Class<?>) && declarations[i].equals(declaration))) {
+                    TypeVariable<?>[] declared = parameters[i];
+                    for (int j = 0; j < declared.length; j++) {
+                        if (declared[j] == variable || declared[j].getName().equals(variable.getName())) {
+                            return offsets[i] + j;
+                        }
+                    }
+                    return -1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Get the slot of the type parameter at the given position of the
+         * generic declaration at the given index.
+         *
+         * @param index
+         *            The index of the generic declaration.
+         * @param position
+         *            The position of the type parameter.
+         * @return The slot.
+         */
+        public int getSlot(int index, int position) {
+            return offsets[index] + position;
+        }
+    }
+
+    /**
+     * Assignments stored in a flat array indexed by the slots of a layout.
+     *
+     * @author Alan Gutierrez
+     */
+    final static class Slots extends Assignments {
+        /** The layout. */
+        final Layout layout;
+
+        /** The assigned types by slot, null for unassigned slots. */
+        final Type[] values;
+
+        /**
+         * Create an empty slot table with the given layout.
+         *
+         * @param layout
+         *            The layout.
+         */
+        public Slots(Layout layout) {
+            this.layout = layout;
+            this.values = new Type[layout.size];
+        }
+
+        /**
+         * Get the type assigned to the given type variable from its slot.
+         *
+         * @param variable
+         *            The type variable.
+         * @return The assigned type or null if the type variable is not
+         *         assigned.
+         */
+        @Override
+        public Type get(TypeVariable<?> variable) {
+            int slot = layout.getSlot(variable);
+            return slot == -1 ? null : values[slot];
+        }
+
+        /**
+         * Copy the assigned types into a map of type variables to their
+         * assigned types. Unassigned slots are not copied.
+         * 
+         * @return A map of the assignments.
+         */
+        public Map<TypeVariable<?>, Type> toMap() {
+            Map<TypeVariable<?>, Type> map = new HashMap<TypeVariable<?>, Type>();
+            for (int i = 0; i < layout.declarations.length; i++) {
+                TypeVariable<?>[] declared = layout.parameters[i];
+                for (int j = 0; j < declared.length; j++) {
+                    Type value = values[layout.getSlot(i, j)];
+                    if (value != null) {
+                        map.put(declared[j], value);
+                    }
+                }
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.goodworkalan.ilk;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A batch of objects that share a single key, the columnar form of a list of
+ * {@link Ilk.Box} instances of the same type.
+ * <p>
+ * A box array holds one key and an array of objects, so a batch does not
+ * carry a box with a key reference for each object, and the batch is cast
+ * with a single assignability check. Lists of boxes of mixed types are
+ * grouped into box arrays by key with {@link #group(Collection) group}, or
+ * cast with {@link #castAll(Collection, Ilk) castAll}, which checks each
+ * distinct key once.
+ *
+ * @author Alan Gutierrez
+ */
+public final class BoxArray implements Serializable {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The super type token key shared by the objects. */
+    public final Ilk.Key key;
+
+    /** The objects. */
+    private final Object[] objects;
+
+    /**
+     * Create a box array that associates the given key with each of the given
+     * objects. The array is not copied.
+     *
+     * @param key
+     *            The key.
+     * @param objects
+     *            The objects.
+     */
+    BoxArray(Ilk.Key key, Object[] objects) {
+        this.key = key;
+        this.objects = objects;
+    }
+
+    /**
+     * Get the number of objects.
+     *
+     * @return The number of objects.
+     */
+    public int size() {
+        return objects.length;
+    }
+
+    /**
+     * Get a box that contains the object at the given index.
+     *
+     * @param index
+     *            The index.
+     * @return A box containing the object.
+     * @exception IndexOutOfBoundsException
+     *                If the index is out of range.
+     */
+    public Ilk.Box get(int index) {
+        return new Ilk.Box(key, objects[index]);
+    }
+
+    /**
+     * Cast the objects to the given class.
+     *
+     * @param <C>
+     *            The type to cast to.
+     * @param castClass
+     *            The class to cast to.
+     * @return An unmodifiable list of the objects cast to the class.
+     * @exception ClassCastException
+     *                If the objects are not of the given type.
+     */
+    public <C> List<C> cast(Class<C> castClass) {
+        return cast(new Ilk<C>(castClass));
+    }
+
+    /**
+     * Cast the objects to the type of the given super type token with a single
+     * assignability check. The list returned is a view of the objects and is
+     * not copied.
+     *
+     * @param <C>
+     *            The type to cast to.
+     * @param ilk
+     *            The super type token of the type to cast to.
+     * @return An unmodifiable list of the objects cast to the type.
+     * @exception ClassCastException
+     *                If the objects are not of the given type.
+     */
+    @SuppressWarnings("unchecked")
+    public <C> List<C> cast(Ilk<C> ilk) {
+        if (!ilk.key.isAssignableFrom(key)) {
+            throw new ClassCastException();
+        }
+        return (List<C>) Collections.unmodifiableList(Arrays.asList(objects));
+    }
+
+    /**
+     * Cast the objects of each of the given boxes to the type of the given
+     * super type token, checking the assignability of each distinct key once.
+     *
+     * @param <C>
+     *            The type to cast to.
+     * @param boxes
+     *            The boxes.
+     * @param ilk
+     *            The super type token of the type to cast to.
+     * @return A list of the objects cast to the type in the order of the
+     *         boxes.
+     * @exception ClassCastException
+     *                If the object of any box is not of the given type.
+     */
+    @SuppressWarnings("unchecked")
+    public static <C> List<C> castAll(Collection<Ilk.Box> boxes, Ilk<C> ilk) {
+        Map<Ilk.Key, Boolean> checked = new HashMap<Ilk.Key, Boolean>();
+        List<C> objects = new ArrayList<C>(boxes.size());
+        for (Ilk.Box box : boxes) {
+            Boolean assignable = checked.get(box.key);
+            if (assignable == null) {
+                assignable = ilk.key.isAssignableFrom(box.key);
+                checked.put(box.key, assignable);
+            }
+            if (!assignable) {
+                throw new ClassCastException();
+            }
+            objects.add((C) box.object);
+        }
+        return objects;
+    }
+
+    /**
+     * Group the objects of the given boxes into box arrays by key. The box
+     * arrays are in the order in which their keys first appear, and the
+     * objects of each box array are in the order of the boxes.
+     *
+     * @param boxes
+     *            The boxes.
+     * @return A list of box arrays, one for each distinct key.
+     */
+    public static List<BoxArray> group(Collection<Ilk.Box> boxes) {
+        Map<Ilk.Key, List<Object>> grouped = new LinkedHashMap<Ilk.Key, List<Object>>();
+        for (Ilk.Box box : boxes) {
+            List<Object> objects = grouped.get(box.key);
+            if (objects == null) {
+                objects = new ArrayList<Object>();
+                grouped.put(box.key, objects);
+            }
+            objects.add(box.object);
+        }
+        List<BoxArray> arrays = new ArrayList<BoxArray>(grouped.size());
+        for (Map.Entry<Ilk.Key, List<Object>> entry : grouped.entrySet()) {
+            arrays.add(new BoxArray(entry.getKey(), entry.getValue().toArray()));
+        }
+        return arrays;
+    }
+
+    /**
+     * Create a string representation of this box array that gives the
+     * appearance of a map with one element whose key is the key of the box
+     * array and whose value is the list of objects.
+     *
+     * @return A string representation of this object.
+     */
+    public String toString() {
+        return Collections.singletonMap(key, Arrays.asList(objects)).toString();
+    }
+}
@@ -0,0 +1,183 @@
+package com.goodworkalan.ilk;
+
+import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable template of the type variable assignments made by the super
+ * classes and implemented interfaces of a raw class.
+ * <p>
+ * For every type variable declared by an ancestor of the class, the template
+ * records the type assigned to it, expressed in terms of the type parameters
+ * of the class itself. To build the type variable assignments for an actual
+ * parameterized type, the template is instantiated by substituting the actual
+ * type arguments for the type parameters of the class, so the generic
+ * interfaces and generic super classes of the hierarchy are only visited once
+ * per class.
+ * <p>
+ * The template numbers the type parameters of the class and of each ancestor
+ * that declares an assigned type variable by position, so that an
+ * instantiated template is a flat array of assigned types indexed by slot and
+ * no type variable is hashed when it is instantiated or when its assignments
+ * are looked up.
+ * <p>
+ * Templates are held in a <code>ClassValue</code> so that they are created
+ * once per class and released when the class is unloaded.
+ *
+ * @author Alan Gutierrez
+ */
+final class Hierarchy {
+    /** The hierarchy templates for each class. */
+    private static final ClassValue<Hierarchy> HIERARCHIES = new ClassValue<Hierarchy>() {
+        @Override
+        protected Hierarchy computeValue(Class<?> type) {
+            return new Hierarchy(type);
+        }
+    };
+
+    /** The type parameters declared by the class. */
+    final TypeVariable<?>[] parameters;
+
+    /** The type variables declared by the ancestors of the class. */
+    final TypeVariable<?>[] variables;
+
+    /**
+     * The types assigned to the ancestor type variables at the same index in
+     * the variables array in terms of the type parameters of the class.
+     */
+    final Type[] assignments;
+
+    /**
+     * The class, all of its super classes and all of the interfaces it
+     * implements, ending with <code>Object</code>, which is included for
+     * interfaces as well.
+     */
+    final Class<?>[] ancestors;
+
+    /**
+     * The numbering of the type parameters of the class followed by the type
+     * parameters of each ancestor that declares an assigned type variable.
+     */
+    final Assignments.Layout layout;
+
+    /** The slot of each type variable in the variables array. */
+    private final int[] slots;
+
+    /**
+     * Create the hierarchy template for the given class.
+     *
+     * @param type
+     *            The class.
+     */
+    private Hierarchy(Class<?> type) {
+        Map<TypeVariable<?>, Type> assignments = new LinkedHashMap<TypeVariable<?>, Type>();
+        for (Type iface : type.getGenericInterfaces()) {
+            inherit(assignments, iface);
+        }
+        inherit(assignments, type.getGenericSuperclass());
+        Set<Class<?>> ancestors = new LinkedHashSet<Class<?>>();
+        ancestors.add(type);
+        for (Class<?> iface : type.getInterfaces()) {
+            ancestors.addAll(Arrays.asList(getInstance(iface).ancestors));
+        }
+        if (type.getSuperclass() != null) {
+            ancestors.addAll(Arrays.asList(getInstance(type.getSuperclass()).ancestors));
+        }
+        ancestors.remove(Object.class);
+        ancestors.add(Object.class);
+        this.ancestors = ancestors.toArray(new Class<?>[ancestors.size()]);
+        this.parameters = type.getTypeParameters();
+        this.variables = assignments.keySet().toArray(new TypeVariable<?>[assignments.size()]);
+        this.assignments = assignments.values().toArray(new Type[assignments.size()]);
+        List<GenericDeclaration> declarations = new ArrayList<GenericDeclaration>();
+        List<TypeVariable<?>[]> declared = new ArrayList<TypeVariable<?>[]>();
+        declarations.add(type);
+        declared.add(parameters);
+        for (TypeVariable<?> variable : variables) {
+            GenericDeclaration declaration = variable.getGenericDeclaration();
+            if (!declarations.contains(declaration)) {
+                declarations.add(declaration);
+                declared.add(declaration.getTypeParameters());
+            }
+        }
+        this.layout = new Assignments.Layout(declarations.toArray(new GenericDeclaration[declarations.size()]), declared.toArray(new TypeVariable<?>[declared.size()][]));
+        this.slots = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            slots[i] = layout.getSlot(variables[i]);
+        }
+    }
+
+    /**
+     * Create the type variable assignments of the hierarchy of the given
+     * actualized type, whose raw class is the class of this template, in a
+     * slot table. The actual type arguments of the given type are stored in
+     * the slots of the type parameters of the class and the assignments of
+     * the template are substituted into the slots of the ancestor type
+     * variables in the order in which the ancestors are visited, with the same
+     * result as {@link Types#getHierarchTypes(Map, Type) getHierarchTypes}
+     * given an empty map.
+     * 
+     * @param source
+     *            The actualized type.
+     * @return The type variable assignments.
+     */
+    Assignments.Slots instantiate(Type source) {
+        Assignments.Slots table = new Assignments.Slots(layout);
+        if (source instanceof ParameterizedType) {
+            Type[] arguments = Types.getArguments((ParameterizedType) source);
+            System.arraycopy(arguments, 0, table.values, 0, parameters.length);
+        }
+        for (int i = 0; i < slots.length; i++) {
+            table.values[slots[i]] = Types.substitute(assignments[i], table);
+        }
+        return table;
+    }
+
+    /**
+     * Get the hierarchy template for the given class.
+     *
+     * @param type
+     *            The class.
+     * @return The hierarchy template.
+     */
+    static Hierarchy getInstance(Class<?> type) {
+        return HIERARCHIES.get(type);
+    }
+
+    /**
+     * Add the type variable assignments made by the given generic super class
+     * or interface and by all of its ancestors to the given map of
+     * assignments, using the template of the super type's raw class.
+     *
+     * @param assignments
+     *            The map of type variable assignments.
+     * @param superType
+     *            The generic super class or interface.
+     */
+    private static void inherit(Map<TypeVariable<?>, Type> assignments, Type superType) {
+        if (superType != null) {
+            Hierarchy hierarchy = getInstance(Types.getRawClass(superType));
+            Map<TypeVariable<?>, Type> local = new HashMap<TypeVariable<?>, Type>();
+            if (superType instanceof ParameterizedType) {
+                Type[] arguments = ((ParameterizedType) superType).getActualTypeArguments();
+                for (int i = 0; i < hierarchy.parameters.length; i++) {
+                    local.put(hierarchy.parameters[i], arguments[i]);
+                    assignments.put(hierarchy.parameters[i], arguments[i]);
+                }
+            }
+            for (int i = 0; i < hierarchy.variables.length; i++) {
+                assignments.put(hierarchy.variables[i], Types.substitute(hierarchy.assignments[i], Assignments.of(local)));
+            }
+        }
+    }
+}
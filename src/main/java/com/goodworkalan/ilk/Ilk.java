@@ -1,12 +1,19 @@
 package com.goodworkalan.ilk;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * An implementation of type tokens or Gafter's Gadget that generates a
@@ -18,6 +25,34 @@ import java.util.Map;
  *            The type to tokenize.
  */
 public class Ilk<T> {
+    /**
+     * The canonical key of each subclass of <code>Ilk</code> that specifies
+     * the type parameter of <code>Ilk</code> in its declaration. Values are
+     * released with the subclass when its class loader is unloaded.
+     */
+    private static final ClassValue<Key> KEYS = new ClassValue<Key>() {
+        @Override
+        protected Key computeValue(Class<?> type) {
+            // The generic superclass is a class and not a parameterized type,
+            // raising a class cast exception, when the subclass does not
+            // specify the type parameter.
+            ParameterizedType pt = (ParameterizedType) type.getGenericSuperclass();
+            return new Key(pt.getActualTypeArguments()[0]).intern();
+        }
+    };
+
+    /**
+     * The flyweight super type token of each class, with the canonical key of
+     * the class. Values are released with the class when its class loader is
+     * unloaded.
+     */
+    private static final ClassValue<Ilk<?>> CLASS_ILKS = new ClassValue<Ilk<?>>() {
+        @Override
+        protected Ilk<?> computeValue(Class<?> type) {
+            return new Ilk<Object>(new Key(type).intern());
+        }
+    };
+
     /** The super type token key. */
     public final Key key;
 
@@ -46,9 +81,7 @@ public class Ilk<T> {
      *         type.
      */
     public <V> Ilk<T> assign(TypeVariable<?> typeVariable, Type type) {
-        Map<TypeVariable<?>, Type> types = new HashMap<TypeVariable<?>, Type>();
-        types.put(typeVariable, type);
-        Type assigned = Types.getActualType(key.type, types);
+        Type assigned = Types.getActualType(key.type, Assignments.of(typeVariable, type));
         return new Ilk<T>(assigned);
     }
 
@@ -68,53 +101,46 @@ public class Ilk<T> {
     Ilk(Type type) {
         key = new Key(type);
     }
-    
+
+    /**
+     * Create an ilk around an existing key, sharing the key instance.
+     *
+     * @param key
+     *            The key.
+     */
+    Ilk(Key key) {
+        this.key = key;
+    }
+
     /**
      * Generate a super type token from the type parameters given in the class
      * type declaration.
      * <p>
      * This method is meant to be called from anonymous subclasses of
-     * <code>Ilk</code>.
+     * <code>Ilk</code>. The key is resolved by reflection once for each
+     * subclass and shared by every instance of the subclass.
+     * 
+     * @exception ClassCastException
+     *                If the class is not a subclass that specifies the type
+     *                parameter of <code>Ilk</code>.
      */
     protected Ilk() {
-        // Give me class information.
-        Class<?> klass = getClass();
-
-        // See that I have created an anonymous subclass of TypeReference in the  
-        // main method. Hence, to get the TypeReference itself, I need superclass.  
-        // Furthermore, to get Type information, you should call  
-        // getGenericSuperclass() instead of getSuperclass().  
-        Type superClass = klass.getGenericSuperclass();  
-       
-//        if (superClass instanceof Class<?>) {
-            // Type has four subinterface:  
-            // (1) GenericArrayType: component type is either a  
-            // parameterized type or a type variable. Parameterized type is a class  
-            // or interface with its actual type argument, e.g., ArrayList<String>.  
-            // Type variable is unqualified identifier like T or V.  
-            //  
-            // (2) ParameterizedType: see (1).  
-            //  
-            // (3) TypeVariable<D>: see (1).  
-            //  
-            // (4) WildcardType: ?  
-            //  
-            // and one subclass:  
-            // (5) Class.  
-            //  
-            // If TypeReference is created by 'new TypeReference() { }', then  
-            // superClass would be just an instance of Class instead of one of the  
-            // interfaces described above. In that case, because I don't have type  
-            // passed to TypeReference, an exception should be raised.  
-//            throw new IllegalStateException();  
-//        }  
-       
-        // By superClass, we mean 'TypeReference<T>'. So, it is obvious that  
-        // superClass is ParameterizedType.  
-        ParameterizedType pt = (ParameterizedType) superClass;  
-       
-        // We have one type argument in TypeRefence<T>: T.
-        key = new Key(pt.getActualTypeArguments()[0]);
+        key = KEYS.get(getClass());
+    }
+
+    /**
+     * Get the canonical key of the given subclass of <code>Ilk</code>, the key
+     * shared by every instance created with the protected constructor.
+     * 
+     * @param subclass
+     *            The subclass of <code>Ilk</code>.
+     * @return The canonical key of the subclass.
+     * @exception ClassCastException
+     *                If the class is not a subclass that specifies the type
+     *                parameter of <code>Ilk</code>.
+     */
+    static Key getKey(Class<?> subclass) {
+        return KEYS.get(subclass);
     }
 
     /**
@@ -130,6 +156,137 @@ public class Ilk<T> {
         return new Box(key, object);
     }
 
+    /**
+     * Create a box array that contains the given objects under the single key
+     * of this super type token, so that the whole batch can be cast with one
+     * assignability check.
+     * 
+     * @param objects
+     *            The objects to box.
+     * @return A box array containing the objects.
+     */
+    public BoxArray boxArray(Collection<? extends T> objects) {
+        return new BoxArray(key, objects.toArray());
+    }
+
+    /**
+     * Get the super type token for the given class representing a type that is
+     * not generic. The super type token is created once for each class and
+     * shared, with the canonical key of the class.
+     *
+     * @param <T>
+     *            The type to tokenize.
+     * @param type
+     *            The class.
+     * @return A super type token for the class.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Ilk<T> of(Class<T> type) {
+        return (Ilk<T>) CLASS_ILKS.get(type);
+    }
+
+    /**
+     * Create a super type token for the parameterized type of the given raw
+     * class with the given type arguments without creating an anonymous
+     * subclass of <code>Ilk</code>. The type arguments are checked against the
+     * bounds of the type parameters of the raw class. The owner type of a
+     * nested class is its declaring class, as it is for parameterized types
+     * obtained through reflection.
+     * <p>
+     * If no type arguments are given and the raw class is not generic, the
+     * super type token is for the class itself.
+     *
+     * @param rawClass
+     *            The raw class.
+     * @param arguments
+     *            The type arguments.
+     * @return A super type token for the parameterized type.
+     * @exception IllegalArgumentException
+     *                If the number of type arguments does not match the number
+     *                of type parameters or if a type argument is not within
+     *                the bounds of its type parameter.
+     */
+    public static Ilk<?> of(Class<?> rawClass, Ilk<?>... arguments) {
+        TypeVariable<?>[] parameters = rawClass.getTypeParameters();
+        if (parameters.length != arguments.length) {
+            throw new IllegalArgumentException("Wrong number of type arguments for " + rawClass.getName());
+        }
+        if (arguments.length == 0) {
+            return new Ilk<Object>(rawClass);
+        }
+        Type[] actual = new Type[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            actual[i] = arguments[i].key.type;
+            if (!(actual[i] instanceof TypeVariable<?>)) {
+                Types.checkTypeVariable(parameters[i], actual[i]);
+            }
+        }
+        return new Ilk<Object>(new Types.Parameterized(rawClass, rawClass.getDeclaringClass(), actual));
+    }
+
+    /**
+     * Create a super type token for the unbounded wildcard type
+     * <code>?</code>. A wildcard super type token is only meaningful as a type
+     * argument given to {@link #of(Class, Ilk...) of}.
+     *
+     * @return A super type token for the unbounded wildcard.
+     */
+    public static Ilk<?> wildcard() {
+        return new Ilk<Object>(new Types.Wildcard(new Type[0], new Type[] { Object.class }));
+    }
+
+    /**
+     * Create a super type token for the wildcard type <code>? extends</code>
+     * the given upper bound. A wildcard super type token is only meaningful as
+     * a type argument given to {@link #of(Class, Ilk...) of}.
+     *
+     * @param upperBound
+     *            The upper bound.
+     * @return A super type token for the wildcard.
+     */
+    public static Ilk<?> wildcardExtends(Class<?> upperBound) {
+        return wildcardExtends(new Ilk<Object>(upperBound));
+    }
+
+    /**
+     * Create a super type token for the wildcard type <code>? extends</code>
+     * the given upper bound. A wildcard super type token is only meaningful as
+     * a type argument given to {@link #of(Class, Ilk...) of}.
+     *
+     * @param upperBound
+     *            The upper bound.
+     * @return A super type token for the wildcard.
+     */
+    public static Ilk<?> wildcardExtends(Ilk<?> upperBound) {
+        return new Ilk<Object>(new Types.Wildcard(new Type[0], new Type[] { upperBound.key.type }));
+    }
+
+    /**
+     * Create a super type token for the wildcard type <code>? super</code> the
+     * given lower bound. A wildcard super type token is only meaningful as a
+     * type argument given to {@link #of(Class, Ilk...) of}.
+     *
+     * @param lowerBound
+     *            The lower bound.
+     * @return A super type token for the wildcard.
+     */
+    public static Ilk<?> wildcardSuper(Class<?> lowerBound) {
+        return wildcardSuper(new Ilk<Object>(lowerBound));
+    }
+
+    /**
+     * Create a super type token for the wildcard type <code>? super</code> the
+     * given lower bound. A wildcard super type token is only meaningful as a
+     * type argument given to {@link #of(Class, Ilk...) of}.
+     *
+     * @param lowerBound
+     *            The lower bound.
+     * @return A super type token for the wildcard.
+     */
+    public static Ilk<?> wildcardSuper(Ilk<?> lowerBound) {
+        return new Ilk<Object>(new Types.Wildcard(new Type[] { lowerBound.key.type }, new Type[] { Object.class }));
+    }
+
     /**
      * Generate a string representation of the <code>Ilk</code> by using the
      * string representation of the <code>Ilk.Key</code>.
@@ -152,6 +309,27 @@ public class Ilk<T> {
         /** The type. */
         public final Type type;
 
+        /**
+         * Whether this key is the canonical instance returned by
+         * {@link #intern() intern}. Two distinct canonical keys are never
+         * equal. This is not volatile, a thread that does not see the flag
+         * set will simply test equality structurally.
+         */
+        transient boolean canonical;
+
+        /**
+         * The cached hash code of the type or zero if it has not been
+         * calculated. The hash code of a class is not stable across virtual
+         * machines, so it is not serialized.
+         */
+        private transient int hashCode;
+
+        /** The compiled assignability matcher, created on first use. */
+        private transient KeyMatcher matcher;
+
+        /** The resolved member table, created on first use. */
+        private transient Members members;
+
         /**
          * Create a type key around the given type.
          * 
@@ -162,6 +340,22 @@ public class Ilk<T> {
             this.type = type;
         }
 
+        /**
+         * Return the canonical key that is equal to this key. Structurally
+         * equal keys that have been interned share a single instance, so that
+         * equality of interned keys is an identity test. The table of
+         * canonical keys is weakly referenced, canonical keys that are no
+         * longer in use are garbage collected.
+         * 
+         * @return The canonical key equal to this key.
+         */
+        public Key intern() {
+            if (canonical) {
+                return this;
+            }
+            return KeyTable.intern(this);
+        }
+
         /**
          * Get a key for the type parameter at the given index.
          * 
@@ -175,6 +369,9 @@ public class Ilk<T> {
          *                bounds.
          */
         public Key get(int index) {
+            if (type instanceof Types.Parameterized) {
+                return new Key(((Types.Parameterized) type).argument(index));
+            }
             return new Key(((ParameterizedType) type).getActualTypeArguments()[index]);
         }
  
@@ -185,21 +382,71 @@ public class Ilk<T> {
          * interface of the class or interface in the same position in the
          * hierarchy represented by the given key. It returns <code>true</code>
          * if so; otherwise it returns <code>false</code>.
-         * 
+         * <p>
+         * Results are cached by the {@link AssignableCache#getInstance()
+         * current assignability cache} if there is one.
+         *
          * @param key
          *            The key to assign from.
          * @return True if the key can be assigned to an object represented by
          *         this key.
          */
         public boolean isAssignableFrom(Key key) {
-            return Types.isAssignableFrom(type, key.type);
+            AssignableCache cache = AssignableCache.getInstance();
+            if (cache == null) {
+                return Types.isAssignableFrom(type, key.type);
+            }
+            return cache.isAssignableFrom(this, key);
+        }
+
+        /**
+         * Get a matcher compiled from the type of this key that determines
+         * whether other keys can be assigned to this key. The structure of the
+         * type of this key is examined once, when the matcher is compiled, so
+         * a matcher is preferable to {@link #isAssignableFrom(Key)
+         * isAssignableFrom} for keys that are tested against many other keys.
+         * The matcher is compiled once and cached by this key.
+         * 
+         * @return The compiled assignability matcher.
+         */
+        public KeyMatcher compileMatcher() {
+            KeyMatcher matcher = this.matcher;
+            if (matcher == null) {
+                matcher = this.matcher = KeyMatcher.compile(type);
+            }
+            return matcher;
+        }
+
+        /**
+         * Get the table of the public methods, fields and constructors of the
+         * raw class of this key with their generic types actualized by the
+         * type of this key. The table is created once for the canonical
+         * instance of this key and is shared by all equal keys.
+         * 
+         * @return The resolved member table.
+         * @exception IllegalArgumentException
+         *                If the type of this key is not a class or a
+         *                parameterized type.
+         */
+        public Members members() {
+            Members members = this.members;
+            if (members == null) {
+                Key canonical = intern();
+                members = canonical.members;
+                if (members == null) {
+                    members = canonical.members = new Members(canonical);
+                }
+                this.members = members;
+            }
+            return members;
         }
 
         /**
          * Two keys are equal if the underlying types are equal. The underlying
          * types are equal if they are both classes and they are equal, or if
          * they are one of the other types and all of their properties are
-         * equal.
+         * equal. Two canonical keys are equal only if they are the same
+         * instance.
          * 
          * @param object
          *            The object to test for equality.
@@ -211,7 +458,14 @@ public class Ilk<T> {
                 return true;
             }
             if (object instanceof Key) {
-                return Types.equals(type, ((Key) object).type);
+                Key key = (Key) object;
+                if (canonical && key.canonical) {
+                    return false;
+                }
+                if (hashCode() != key.hashCode()) {
+                    return false;
+                }
+                return Types.equals(type, key.type);
             }
             return false;
         }
@@ -219,13 +473,17 @@ public class Ilk<T> {
         /**
          * Return a hash code that combines the hash code of the underlying type
          * which includes all of the type parameters if the underlying type is a
-         * parameterized type.
+         * parameterized type. The hash code is calculated once and cached.
          * 
          * @return The hash code.
          */
         @Override
         public int hashCode() {
-            return Types.hashCode(type);
+            int hashCode = this.hashCode;
+            if (hashCode == 0) {
+                hashCode = this.hashCode = Types.hashCode(type);
+            }
+            return hashCode;
         }
 
         /**
@@ -237,6 +495,82 @@ public class Ilk<T> {
         public String toString() {
             return Types.typeToString(type);
         }
+
+        /**
+         * Replace this key with a serialized form that encodes the type using
+         * the compact encoding of {@link TypeCodec}, since the type
+         * implementations of the JDK and of <code>Types</code> are not
+         * serializable.
+         * 
+         * @return The serialized form of this key.
+         * @throws ObjectStreamException
+         *             If the type cannot be encoded because it contains a
+         *             type variable that is not declared by a class, method
+         *             or constructor.
+         */
+        private Object writeReplace() throws ObjectStreamException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                new TypeCodec.Encoder(new DataOutputStream(bytes)).write(type);
+            } catch (IOException e) {
+                throw (ObjectStreamException) new NotSerializableException(toString()).initCause(e);
+            } catch (IllegalArgumentException e) {
+                throw (ObjectStreamException) new NotSerializableException(toString()).initCause(e);
+            }
+            return new SerializedKey(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * The serialized form of a key, the type of the key encoded by
+     * {@link TypeCodec}. The key is decoded into a canonical key, so that
+     * deserialized keys are equal by identity to the interned keys of the
+     * application.
+     * 
+     * @author Alan Gutierrez
+     */
+    private final static class SerializedKey implements Serializable {
+        /** The serial version id. */
+        private static final long serialVersionUID = 1L;
+
+        /** The encoded type. */
+        private final byte[] type;
+
+        /**
+         * Create the serialized form of a key.
+         * 
+         * @param type
+         *            The encoded type.
+         */
+        public SerializedKey(byte[] type) {
+            this.type = type;
+        }
+
+        /**
+         * Decode the type and return the canonical key for the type. Classes
+         * are loaded using the context class loader of the current thread, or
+         * the class loader of <code>Ilk</code> if there is none.
+         * 
+         * @return The canonical key.
+         * @throws ObjectStreamException
+         *             If the type cannot be decoded or the encoded type is
+         *             invalid.
+         */
+        private Object readResolve() throws ObjectStreamException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader == null) {
+                classLoader = Ilk.class.getClassLoader();
+            }
+            try {
+                return new Key(new TypeCodec.Decoder(new DataInputStream(new ByteArrayInputStream(type)), classLoader).read()).intern();
+            } catch (ObjectStreamException e) {
+                throw e;
+            } catch (IOException e) {
+                throw (ObjectStreamException) new InvalidObjectException(e.getMessage()).initCause(e);
+            } catch (RuntimeException e) {
+                throw (ObjectStreamException) new InvalidObjectException(e.getMessage()).initCause(e);
+            }
+        }
     }
 
     /**
@@ -299,6 +633,10 @@ public class Ilk<T> {
         
         /**
          * Cast the given object to the given class.
+         * <p>
+         * When the key of this box has a raw class, the cast is tested against
+         * the raw class alone and nothing is allocated. Otherwise, the cast is
+         * tested with the shared super type token of the class.
          * 
          * @param <C>
          *            The type to cast to.
@@ -308,8 +646,21 @@ public class Ilk<T> {
          * @exception ClassCastException
          *                If the object is not of the given type.
          */
+        @SuppressWarnings("unchecked")
         public <C> C cast(Class<C> castClass) {
-            return cast(new Ilk<C>(castClass));
+            if (IlkMetrics.ENABLED) {
+                return cast(of(castClass));
+            }
+            // A class is assignable from a type if it is assignable from the
+            // raw class of the type, regardless of the type arguments.
+            Class<?> rawClass = Types.getRawClass(key.type);
+            if (rawClass == null) {
+                return cast(of(castClass));
+            }
+            if (castClass.isAssignableFrom(rawClass)) {
+                return (C) object;
+            }
+            throw new ClassCastException();
         }
 
         /**
@@ -331,6 +682,18 @@ public class Ilk<T> {
          */
         @SuppressWarnings("unchecked")
         public <C> C cast(Ilk<C> ilk) {
+            if (IlkMetrics.ENABLED) {
+                long start = System.nanoTime();
+                try {
+                    if (ilk.key.isAssignableFrom(key)) {
+                        return (C) object;
+                    }
+                    IlkMetrics.FAILED_CASTS.incrementAndGet();
+                    throw new ClassCastException();
+                } finally {
+                    IlkMetrics.CAST.record(start, key.type);
+                }
+            }
             if (ilk.key.isAssignableFrom(key)) {
                 return (C) object;
             }
@@ -0,0 +1,32 @@
+package com.goodworkalan.ilk;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field whose type is to have a super type token generated at compile
+ * time by the {@link com.goodworkalan.ilk.processor.IlkConstantProcessor
+ * IlkConstantProcessor}.
+ * <p>
+ * For a class <code>Config</code>, the processor generates a class named
+ * <code>ConfigIlks</code> in the same package with a constant super type token
+ * for the type of each marked field, named after the field in upper case with
+ * underscores separating words. The constants are built with
+ * {@link Ilk#of(Class, Ilk...) Ilk.of}, so no anonymous subclass of
+ * <code>Ilk</code> is loaded and no generic signature is parsed. The generated
+ * class has a <code>verify</code> method that checks each constant against
+ * the generic type of its field obtained through reflection.
+ * <p>
+ * The processor is not discovered automatically and must be named with the
+ * <code>-processor</code> option of the compiler.
+ *
+ * @author Alan Gutierrez
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface IlkConstant {
+}
@@ -0,0 +1,225 @@
+package com.goodworkalan.ilk;
+
+import java.util.List;
+
+/**
+ * Dispatches boxed events to the subscribers whose super type tokens are
+ * assignable from the key of the event, using the semantics of
+ * {@link Types#isAssignableFrom(java.lang.reflect.Type, java.lang.reflect.Type)
+ * Types.isAssignableFrom}.
+ * <p>
+ * The subscribers that match a key are determined once for each distinct
+ * event key and cached in the order in which they subscribed. The cache is
+ * cleared when a subscriber subscribes or unsubscribes. Publishing an event
+ * whose key has been seen before is a lookup of the cached list of
+ * subscribers followed by an iteration over the list.
+ * <p>
+ * The cache is bounded, so that publishing events of many different types
+ * does not hold the classes of every event key ever published. When the
+ * cache reaches its maximum size it is cleared.
+ * <p>
+ * Events are delivered on the publishing thread. An exception thrown by a
+ * subscriber is propagated to the publisher and the event is not delivered to
+ * the remaining subscribers.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkDispatcher {
+    /** The subscriptions indexed by the keys of their super type tokens. */
+    private final IlkIndex<Subscription> subscriptions;
+
+    /**
+     * Create a dispatcher that caches the subscribers of at most the default
+     * maximum number of event keys.
+     */
+    public IlkDispatcher() {
+        this(IlkIndex.DEFAULT_MAXIMUM_CACHE_SIZE);
+    }
+
+    /**
+     * Create a dispatcher that caches the subscribers of at most the given
+     * number of event keys.
+     *
+     * @param maximumCacheSize
+     *            The maximum number of event keys whose subscribers are
+     *            cached.
+     * @exception IllegalArgumentException
+     *                If the maximum cache size is less than one.
+     */
+    public IlkDispatcher(int maximumCacheSize) {
+        this.subscriptions = new IlkIndex<Subscription>(maximumCacheSize);
+    }
+
+    /**
+     * Receives events published to a dispatcher.
+     *
+     * @author Alan Gutierrez
+     *
+     * @param <T>
+     *            The type of event.
+     */
+    public interface Subscriber<T> {
+        /**
+         * Receive an event.
+         *
+         * @param event
+         *            The event.
+         */
+        public void receive(T event);
+    }
+
+    /**
+     * Subscribe the given subscriber to events assignable to the type of the
+     * given super type token.
+     *
+     * @param <T>
+     *            The type of event.
+     * @param ilk
+     *            The super type token of the type of event.
+     * @param subscriber
+     *            The subscriber.
+     * @exception IllegalArgumentException
+     *                If the type of the super type token is not a class or a
+     *                parameterized type.
+     */
+    public <T> void subscribe(Ilk<T> ilk, Subscriber<? super T> subscriber) {
+        subscriptions.add(ilk.key, new Subscription(ilk.key, subscriber));
+    }
+
+    /**
+     * Unsubscribe the given subscriber from events assignable to the type of
+     * the given super type token.
+     *
+     * @param ilk
+     *            The super type token given when subscribing.
+     * @param subscriber
+     *            The subscriber.
+     * @return True if the subscriber was subscribed.
+     */
+    public boolean unsubscribe(Ilk<?> ilk, Subscriber<?> subscriber) {
+        return subscriptions.remove(ilk.key, new Subscription(ilk.key, subscriber));
+    }
+
+    /**
+     * Publish the given event of the type of the given super type token.
+     *
+     * @param <T>
+     *            The type of event.
+     * @param ilk
+     *            The super type token of the type of event.
+     * @param event
+     *            The event.
+     * @return The number of subscribers that received the event.
+     */
+    public <T> int publish(Ilk<T> ilk, T event) {
+        return publish(ilk.box(event));
+    }
+
+    /**
+     * Publish the object in the given box to each subscriber whose super type
+     * token is assignable from the key of the box, in the order in which the
+     * subscribers subscribed.
+     *
+     * @param box
+     *            The boxed event.
+     * @return The number of subscribers that received the event.
+     * @exception IllegalArgumentException
+     *                If the type of the key of the box is not a class or a
+     *                parameterized type.
+     */
+    public int publish(Ilk.Box box) {
+        List<Subscription> matched = subscriptions.getSupertypes(box.key);
+        int count = matched.size();
+        for (int i = 0; i < count; i++) {
+            matched.get(i).deliver(box.object);
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of subscriptions.
+     *
+     * @return The number of subscriptions.
+     */
+    public int size() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Get the number of event keys whose subscribers are cached.
+     *
+     * @return The number of cached event keys.
+     */
+    int getCacheSize() {
+        return subscriptions.getCacheSize();
+    }
+
+    /**
+     * A subscriber and the key of the type of event it receives. Two
+     * subscriptions are equal if they have equal keys and the same
+     * subscriber.
+     */
+    private final static class Subscription {
+        /** The key of the type of event. */
+        private final Ilk.Key key;
+
+        /** The subscriber. */
+        private final Subscriber<?> subscriber;
+
+        /**
+         * Create a subscription.
+         *
+         * @param key
+         *            The key of the type of event.
+         * @param subscriber
+         *            The subscriber.
+         */
+        public Subscription(Ilk.Key key, Subscriber<?> subscriber) {
+            this.key = key;
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Deliver the given event to the subscriber.
+         * <p>
+         * The event is only delivered to subscriptions whose key has been
+         * found to be assignable from the key of the event, so the unchecked
+         * cast is actually safe.
+         *
+         * @param event
+         *            The event.
+         */
+        @SuppressWarnings("unchecked")
+        public void deliver(Object event) {
+            ((Subscriber<Object>) subscriber).receive(event);
+        }
+
+        /**
+         * Two subscriptions are equal if they have equal keys and the same
+         * subscriber.
+         *
+         * @param object
+         *            The object to compare.
+         * @return True if the object is an equal subscription.
+         */
+        @Override
+        public boolean equals(Object object) {
+            if (object instanceof Subscription) {
+                Subscription other = (Subscription) object;
+                return subscriber == other.subscriber && key.equals(other.key);
+            }
+            return false;
+        }
+
+        /**
+         * Get the hash code of the key combined with the identity of the
+         * subscriber.
+         *
+         * @return The hash code.
+         */
+        @Override
+        public int hashCode() {
+            return key.hashCode() * 37 ^ System.identityHashCode(subscriber);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.goodworkalan.ilk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An index of values registered by key that finds all of the values whose key
+ * is assignable to a given key, or all of the values whose key a given key is
+ * assignable to, using the semantics of
+ * {@link Types#isAssignableFrom(java.lang.reflect.Type, java.lang.reflect.Type)
+ * Types.isAssignableFrom}.
+ * <p>
+ * Entries are bucketed by the raw class of their key, and by every super class
+ * and interface of the raw class of their key. A query only tests the
+ * assignability of the keys in the buckets of the raw class of the query key,
+ * or its ancestors, so keys whose raw classes cannot be assigned are never
+ * tested. Query results are cached until the index is modified.
+ * <p>
+ * The query caches are bounded, since they are keyed by the keys given by
+ * callers and would otherwise hold the classes of every key ever queried.
+ * When a cache reaches its maximum size it is cleared, as with
+ * {@link AssignableCache}.
+ * <p>
+ * Values are returned in the order in which they were added. The keys of the
+ * index must be classes or parameterized types.
+ *
+ * @author Alan Gutierrez
+ *
+ * @param <V>
+ *            The type of value.
+ */
+public class IlkIndex<V> {
+    /** The default maximum number of cached results of each kind of query. */
+    public static final int DEFAULT_MAXIMUM_CACHE_SIZE = 1024;
+
+    /** The entries bucketed by the raw class of their key. */
+    private final Map<Class<?>, List<Entry<V>>> byClass = new HashMap<Class<?>, List<Entry<V>>>();
+
+    /** The entries bucketed by every ancestor of the raw class of their key. */
+    private final Map<Class<?>, List<Entry<V>>> byAncestor = new HashMap<Class<?>, List<Entry<V>>>();
+
+    /** The cached results of queries for values with assignable keys. */
+    private final ConcurrentMap<Ilk.Key, List<V>> subtypes = new ConcurrentHashMap<Ilk.Key, List<V>>();
+
+    /** The cached results of queries for values with assigned keys. */
+    private final ConcurrentMap<Ilk.Key, List<V>> supertypes = new ConcurrentHashMap<Ilk.Key, List<V>>();
+
+    /** The maximum number of cached results of each kind of query. */
+    private final int maximumCacheSize;
+
+    /** The number of entries added, used to order entries. */
+    private long sequence;
+
+    /** The number of entries. */
+    private int size;
+
+    /**
+     * Create an empty index that caches at most the default maximum number of
+     * results of each kind of query.
+     */
+    public IlkIndex() {
+        this(DEFAULT_MAXIMUM_CACHE_SIZE);
+    }
+
+    /**
+     * Create an empty index that caches at most the given number of results
+     * of each kind of query.
+     *
+     * @param maximumCacheSize
+     *            The maximum number of cached results of each kind of query.
+     * @exception IllegalArgumentException
+     *                If the maximum cache size is less than one.
+     */
+    public IlkIndex(int maximumCacheSize) {
+        if (maximumCacheSize < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.maximumCacheSize = maximumCacheSize;
+    }
+
+    /**
+     * Get the raw class of the given key.
+     *
+     * @param key
+     *            The key.
+     * @return The raw class.
+     * @exception IllegalArgumentException
+     *                If the key is not a class or a parameterized type.
+     */
+    private static Class<?> getRawClass(Ilk.Key key) {
+        Class<?> rawClass = Types.getRawClass(key.type);
+        if (rawClass == null) {
+            throw new IllegalArgumentException();
+        }
+        return rawClass;
+    }
+
+    /**
+     * Add an entry to the bucket of the given class in the given map of
+     * buckets.
+     *
+     * @param buckets
+     *            The buckets.
+     * @param rawClass
+     *            The class.
+     * @param entry
+     *            The entry.
+     */
+    private static <V> void add(Map<Class<?>, List<Entry<V>>> buckets, Class<?> rawClass, Entry<V> entry) {
+        List<Entry<V>> bucket = buckets.get(rawClass);
+        if (bucket == null) {
+            bucket = new ArrayList<Entry<V>>();
+            buckets.put(rawClass, bucket);
+        }
+        bucket.add(entry);
+    }
+
+    /**
+     * Remove the given entry from the bucket of the given class in the given
+     * map of buckets.
+     *
+     * @param buckets
+     *            The buckets.
+     * @param rawClass
+     *            The class.
+     * @param entry
+     *            The entry.
+     */
+    private static <V> void remove(Map<Class<?>, List<Entry<V>>> buckets, Class<?> rawClass, Entry<V> entry) {
+        List<Entry<V>> bucket = buckets.get(rawClass);
+        bucket.remove(entry);
+        if (bucket.isEmpty()) {
+            buckets.remove(rawClass);
+        }
+    }
+
+    /**
+     * Add the given value to the index under the given key.
+     *
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @exception IllegalArgumentException
+     *                If the key is not a class or a parameterized type.
+     */
+    public synchronized void add(Ilk.Key key, V value) {
+        Class<?> rawClass = getRawClass(key);
+        Entry<V> entry = new Entry<V>(key.intern(), value, sequence++);
+        add(byClass, rawClass, entry);
+        for (Class<?> ancestor : Hierarchy.getInstance(rawClass).ancestors) {
+            add(byAncestor, ancestor, entry);
+        }
+        size++;
+        subtypes.clear();
+        supertypes.clear();
+    }
+
+    /**
+     * Remove the first entry with the given key and the given value from the
+     * index.
+     *
+     * @param key
+     *            The key.
+     * @param value
+     *            The value.
+     * @return True if an entry was removed.
+     */
+    public synchronized boolean remove(Ilk.Key key, V value) {
+        Class<?> rawClass = Types.getRawClass(key.type);
+        List<Entry<V>> bucket = byClass.get(rawClass);
+        if (bucket != null) {
+            Iterator<Entry<V>> entries = bucket.iterator();
+            while (entries.hasNext()) {
+                Entry<V> entry = entries.next();
+                if (entry.key.equals(key) && (value == null ? entry.value == null : value.equals(entry.value))) {
+                    remove(byClass, rawClass, entry);
+                    for (Class<?> ancestor : Hierarchy.getInstance(rawClass).ancestors) {
+                        remove(byAncestor, ancestor, entry);
+                    }
+                    size--;
+                    subtypes.clear();
+                    supertypes.clear();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the values whose keys are assignable to the given key, in the order
+     * in which they were added.
+     *
+     * @param key
+     *            The key to assign to.
+     * @return An unmodifiable list of values.
+     * @exception IllegalArgumentException
+     *                If the key is not a class or a parameterized type.
+     */
+    public List<V> getSubtypes(Ilk.Key key) {
+        List<V> values = subtypes.get(key);
+        if (values == null) {
+            synchronized (this) {
+                values = new ArrayList<V>();
+                List<Entry<V>> bucket = byAncestor.get(getRawClass(key));
+                if (bucket != null) {
+                    for (Entry<V> entry : bucket) {
+                        if (key.isAssignableFrom(entry.key)) {
+                            values.add(entry.value);
+                        }
+                    }
+                }
+                values = Collections.unmodifiableList(values);
+                if (subtypes.size() >= maximumCacheSize) {
+                    subtypes.clear();
+                }
+                subtypes.put(key, values);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the values whose keys the given key can be assigned to, in the order
+     * in which they were added.
+     *
+     * @param key
+     *            The key to assign from.
+     * @return An unmodifiable list of values.
+     * @exception IllegalArgumentException
+     *                If the key is not a class or a parameterized type.
+     */
+    public List<V> getSupertypes(Ilk.Key key) {
+        List<V> values = supertypes.get(key);
+        if (values == null) {
+            synchronized (this) {
+                List<Entry<V>> candidates = new ArrayList<Entry<V>>();
+                for (Class<?> ancestor : Hierarchy.getInstance(getRawClass(key)).ancestors) {
+                    List<Entry<V>> bucket = byClass.get(ancestor);
+                    if (bucket != null) {
+                        for (Entry<V> entry : bucket) {
+                            if (entry.key.isAssignableFrom(key)) {
+                                candidates.add(entry);
+                            }
+                        }
+                    }
+                }
+                Collections.sort(candidates, new Comparator<Entry<V>>() {
+                    public int compare(Entry<V> left, Entry<V> right) {
+                        return left.sequence < right.sequence ? -1 : left.sequence == right.sequence ? 0 : 1;
+                    }
+                });
+                values = new ArrayList<V>(candidates.size());
+                for (Entry<V> entry : candidates) {
+                    values.add(entry.value);
+                }
+                values = Collections.unmodifiableList(values);
+                if (supertypes.size() >= maximumCacheSize) {
+                    supertypes.clear();
+                }
+                supertypes.put(key, values);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the number of entries in the index.
+     *
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of cached query results.
+     *
+     * @return The number of cached query results.
+     */
+    int getCacheSize() {
+        return subtypes.size() + supertypes.size();
+    }
+
+    /**
+     * An entry in the index.
+     *
+     * @param <V>
+     *            The type of value.
+     */
+    private final static class Entry<V> {
+        /** The key. */
+        public final Ilk.Key key;
+
+        /** The value. */
+        public final V value;
+
+        /** The order in which the entry was added. */
+        public final long sequence;
+
+        /**
+         * Create an entry.
+         *
+         * @param key
+         *            The key.
+         * @param value
+         *            The value.
+         * @param sequence
+         *            The order in which the entry was added.
+         */
+        public Entry(Ilk.Key key, V value, long sequence) {
+            this.key = key;
+            this.value = value;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.goodworkalan.ilk;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An object input stream that reads records written by an
+ * {@link IlkOutputStream}, checking the key of each record against the super
+ * type token of the type expected.
+ * <p>
+ * The keys are read into a type table local to the stream. The key of a
+ * table entry is checked against an expected key once, and records of the
+ * same table entry read with the same expected key are not checked again.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkInputStream extends ObjectInputStream {
+    /** The type table. */
+    private final List<Entry> table = new ArrayList<Entry>();
+
+    /** The decoder of keys read into the type table. */
+    private final TypeCodec.Decoder decoder;
+
+    /**
+     * Create an ilk input stream that reads from the given input stream and
+     * loads the classes of keys with the given class loader.
+     *
+     * @param in
+     *            The input stream.
+     * @param classLoader
+     *            The class loader.
+     * @throws IOException
+     *             If an I/O error occurs reading the stream header.
+     */
+    public IlkInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+        super(in);
+        this.decoder = new TypeCodec.Decoder(this, classLoader);
+    }
+
+    /**
+     * Create an ilk input stream that reads from the given input stream and
+     * loads the classes of keys with the context class loader of the current
+     * thread, or the class loader of <code>Ilk</code> if there is none.
+     *
+     * @param in
+     *            The input stream.
+     * @throws IOException
+     *             If an I/O error occurs reading the stream header.
+     */
+    public IlkInputStream(InputStream in) throws IOException {
+        this(in, getDefaultClassLoader());
+    }
+
+    /**
+     * Create an ilk input stream that reads from the given channel through a
+     * buffer, for reading a large number of records from a file.
+     *
+     * @param channel
+     *            The channel.
+     * @throws IOException
+     *             If an I/O error occurs reading the stream header.
+     */
+    public IlkInputStream(ReadableByteChannel channel) throws IOException {
+        this(new BufferedInputStream(Channels.newInputStream(channel), IlkOutputStream.CHANNEL_BUFFER_SIZE));
+    }
+
+    /**
+     * Get the context class loader of the current thread, or the class loader
+     * of <code>Ilk</code> if there is none.
+     *
+     * @return The default class loader.
+     */
+    private static ClassLoader getDefaultClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader == null ? Ilk.class.getClassLoader() : classLoader;
+    }
+
+    /**
+     * Read a record whose key is assignable to the key of the given super
+     * type token.
+     *
+     * @param <T>
+     *            The type of object.
+     * @param ilk
+     *            The super type token of the type of object.
+     * @return The object.
+     * @throws IOException
+     *             If an I/O error occurs.
+     * @throws ClassNotFoundException
+     *             If the class of the object cannot be found.
+     * @exception ClassCastException
+     *                If the key of the record is not assignable to the key of
+     *                the super type token.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T readObject(Ilk<T> ilk) throws IOException, ClassNotFoundException {
+        Entry entry = readEntry();
+        // Read the object before checking so that the stream is positioned at
+        // the next record if the check fails.
+        Object object = readObject();
+        if (entry.checked != ilk.key) {
+            if (!ilk.key.isAssignableFrom(entry.key)) {
+                throw new ClassCastException();
+            }
+            entry.checked = ilk.key;
+        }
+        return (T) object;
+    }
+
+    /**
+     * Read a record into a box whose key is the key of the record.
+     *
+     * @return The box.
+     * @throws IOException
+     *             If an I/O error occurs.
+     * @throws ClassNotFoundException
+     *             If the class of the object cannot be found.
+     */
+    public Ilk.Box readBox() throws IOException, ClassNotFoundException {
+        Entry entry = readEntry();
+        return new Ilk.Box(entry.key, readObject());
+    }
+
+    /**
+     * Read the type table index of a record, reading the key into the type
+     * table if it has not been read before.
+     *
+     * @return The type table entry.
+     * @throws IOException
+     *             If an I/O error occurs or the index is invalid.
+     */
+    private Entry readEntry() throws IOException {
+        int index = TypeCodec.readInteger(this);
+        if (index == 0) {
+            Entry entry = new Entry(new Ilk.Key(decoder.read()).intern());
+            table.add(entry);
+            return entry;
+        }
+        if (index > table.size()) {
+            throw new InvalidObjectException("Invalid type table index.");
+        }
+        return table.get(index - 1);
+    }
+
+    /**
+     * An entry in the type table.
+     *
+     * @author Alan Gutierrez
+     */
+    private final static class Entry {
+        /** The key. */
+        public final Ilk.Key key;
+
+        /** The last expected key the key was found to be assignable to. */
+        public Ilk.Key checked;
+
+        /**
+         * Create a type table entry.
+         *
+         * @param key
+         *            The key.
+         */
+        public Entry(Ilk.Key key) {
+            this.key = key;
+        }
+    }
+}
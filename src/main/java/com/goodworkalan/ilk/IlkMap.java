@@ -0,0 +1,173 @@
+package com.goodworkalan.ilk;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A thread-safe type-safe heterogeneous map of super type tokens to objects of
+ * the type represented by the super type token.
+ * <p>
+ * Objects are stored directly, without an <code>Ilk.Box</code> per entry.
+ * Objects can only be stored using a super type token of their type, and can
+ * only be retrieved using a super type token that is equal to the token used
+ * to store them, so no assignability test is necessary on retrieval. Keys are
+ * interned when an object is stored, so that lookups with interned keys are
+ * an identity test.
+ * <p>
+ * The map is backed by a <code>ConcurrentHashMap</code> so retrieval does not
+ * block and updates by different threads rarely contend. The map does not
+ * accept <code>null</code> objects.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkMap {
+    /** The map of keys to objects. */
+    private final ConcurrentMap<Ilk.Key, Object> objects = new ConcurrentHashMap<Ilk.Key, Object>();
+
+    /**
+     * Associate the given object with the given super type token.
+     *
+     * @param <T>
+     *            The type of object.
+     * @param ilk
+     *            The super type token.
+     * @param object
+     *            The object.
+     * @return The object previously associated with the super type token or
+     *         <code>null</code> if there was none.
+     * @exception NullPointerException
+     *                If the object is null.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T put(Ilk<T> ilk, T object) {
+        return (T) objects.put(ilk.key.intern(), object);
+    }
+
+    /**
+     * Associate the given object with the given super type token only if no
+     * object is already associated with the super type token.
+     *
+     * @param <T>
+     *            The type of object.
+     * @param ilk
+     *            The super type token.
+     * @param object
+     *            The object.
+     * @return The object already associated with the super type token or
+     *         <code>null</code> if the given object was associated.
+     * @exception NullPointerException
+     *                If the object is null.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T putIfAbsent(Ilk<T> ilk, T object) {
+        return (T) objects.putIfAbsent(ilk.key.intern(), object);
+    }
+
+    /**
+     * Associate the object in the given box with the key of the given box.
+     *
+     * @param box
+     *            The box.
+     * @exception NullPointerException
+     *                If the boxed object is null.
+     */
+    public void put(Ilk.Box box) {
+        objects.put(box.key.intern(), box.object);
+    }
+
+    /**
+     * Get the object associated with the given super type token.
+     * <p>
+     * Because the object was stored using a super type token equal to the
+     * given super type token, the unchecked cast is actually safe.
+     *
+     * @param <T>
+     *            The type of object.
+     * @param ilk
+     *            The super type token.
+     * @return The object or <code>null</code> if no object is associated with
+     *         the super type token.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Ilk<T> ilk) {
+        return (T) objects.get(ilk.key);
+    }
+
+    /**
+     * Get a box containing the object associated with the given key. A box is
+     * only created when this method is called.
+     *
+     * @param key
+     *            The key.
+     * @return A box containing the object or <code>null</code> if no object is
+     *         associated with the key.
+     */
+    public Ilk.Box getBox(Ilk.Key key) {
+        Object object = objects.get(key);
+        if (object == null) {
+            return null;
+        }
+        return new Ilk.Box(key, object);
+    }
+
+    /**
+     * Remove the object associated with the given super type token.
+     *
+     * @param <T>
+     *            The type of object.
+     * @param ilk
+     *            The super type token.
+     * @return The object removed or <code>null</code> if no object was
+     *         associated with the super type token.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T remove(Ilk<T> ilk) {
+        return (T) objects.remove(ilk.key);
+    }
+
+    /**
+     * Determine whether an object is associated with the given key.
+     *
+     * @param key
+     *            The key.
+     * @return True if an object is associated with the key.
+     */
+    public boolean containsKey(Ilk.Key key) {
+        return objects.containsKey(key);
+    }
+
+    /**
+     * Get an unmodifiable view of the keys in this map.
+     *
+     * @return The set of keys.
+     */
+    public Set<Ilk.Key> keySet() {
+        return Collections.unmodifiableSet(objects.keySet());
+    }
+
+    /**
+     * Get the number of objects in this map.
+     *
+     * @return The number of objects.
+     */
+    public int size() {
+        return objects.size();
+    }
+
+    /** Remove all of the objects from this map. */
+    public void clear() {
+        objects.clear();
+    }
+
+    /**
+     * Create a string representation of the map.
+     *
+     * @return A string representation of this object.
+     */
+    @Override
+    public String toString() {
+        return objects.toString();
+    }
+}
@@ -0,0 +1,299 @@
+package com.goodworkalan.ilk;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Type resolution metrics of Ilk, registered as a platform MBean.
+ * <p>
+ * Metrics are recorded only if the system property
+ * <code>com.goodworkalan.ilk.metrics</code> is <code>true</code> when this
+ * class is loaded, in which case the metrics are registered with the platform
+ * MBean server under the name <code>com.goodworkalan.ilk:type=Metrics</code>.
+ * The instrumented methods test the static final {@link #ENABLED} flag. The
+ * flag is read from a system property, so it is not a compile-time constant
+ * and <code>javac</code> keeps every instrumented branch, but once the class
+ * is initialized the just-in-time compiler treats the flag as a constant and
+ * removes the disabled branches from compiled code.
+ *
+ * @author Alan Gutierrez
+ */
+public final class IlkMetrics implements IlkMetricsMBean {
+    /** Whether metrics are recorded. */
+    public static final boolean ENABLED = Boolean.getBoolean("com.goodworkalan.ilk.metrics");
+
+    /** The object name of the registered MBean. */
+    public static final String OBJECT_NAME = "com.goodworkalan.ilk:type=Metrics";
+
+    /** The number of buckets in the depth histogram. */
+    static final int DEPTH_BUCKETS = 16;
+
+    /** The timings of <code>Types.getActualType</code>. */
+    static final Timer ACTUAL_TYPE = new Timer();
+
+    /** The timings of <code>Types.isAssignableFrom</code>. */
+    static final Timer ASSIGNABLE = new Timer();
+
+    /** The timings of <code>Ilk.Box.cast</code>. */
+    static final Timer CAST = new Timer();
+
+    /** The number of failed casts. */
+    static final AtomicLong FAILED_CASTS = new AtomicLong();
+
+    /** The histogram of the depths of resolved type trees. */
+    static final AtomicLongArray DEPTHS = new AtomicLongArray(DEPTH_BUCKETS);
+
+    /** The singleton instance. */
+    private static final IlkMetrics INSTANCE = new IlkMetrics();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                // Already registered by another class loader, metrics are
+                // still available through getInstance.
+            }
+        }
+    }
+
+    /** Construct the singleton instance. */
+    private IlkMetrics() {
+    }
+
+    /**
+     * Get the metrics.
+     *
+     * @return The metrics.
+     */
+    public static IlkMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Add a call to the depth histogram.
+     *
+     * @param type
+     *            The type resolved by the call.
+     */
+    static void recordDepth(Type type) {
+        int depth = type == null ? 0 : Types.getDepth(type);
+        DEPTHS.incrementAndGet(Math.max(0, Math.min(depth, DEPTH_BUCKETS) - 1));
+    }
+
+    /**
+     * Call counts and timings of an instrumented method.
+     *
+     * @author Alan Gutierrez
+     */
+    final static class Timer {
+        /** The number of calls. */
+        private final AtomicLong count = new AtomicLong();
+
+        /** The cumulative nanoseconds. */
+        private final AtomicLong nanos = new AtomicLong();
+
+        /** The maximum nanoseconds. */
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /**
+         * Record a call that started at the given time and resolved the given
+         * type.
+         *
+         * @param start
+         *            The start of the call from <code>System.nanoTime</code>.
+         * @param type
+         *            The type resolved by the call.
+         */
+        public void record(long start, Type type) {
+            long elapsed = System.nanoTime() - start;
+            count.incrementAndGet();
+            nanos.addAndGet(elapsed);
+            long max = maxNanos.get();
+            while (elapsed > max && !maxNanos.compareAndSet(max, elapsed)) {
+                max = maxNanos.get();
+            }
+            recordDepth(type);
+        }
+
+        /** Reset the call count and timings. */
+        public void reset() {
+            count.set(0);
+            nanos.set(0);
+            maxNanos.set(0);
+        }
+    }
+
+    /**
+     * Get whether metrics are being recorded.
+     *
+     * @return True if metrics are being recorded.
+     */
+    public boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Get the number of calls to <code>Types.getActualType</code>.
+     *
+     * @return The number of calls.
+     */
+    public long getActualTypeCount() {
+        return ACTUAL_TYPE.count.get();
+    }
+
+    /**
+     * Get the cumulative nanoseconds spent in
+     * <code>Types.getActualType</code>.
+     *
+     * @return The cumulative nanoseconds.
+     */
+    public long getActualTypeNanos() {
+        return ACTUAL_TYPE.nanos.get();
+    }
+
+    /**
+     * Get the longest call to <code>Types.getActualType</code> in
+     * nanoseconds.
+     *
+     * @return The maximum nanoseconds.
+     */
+    public long getActualTypeMaxNanos() {
+        return ACTUAL_TYPE.maxNanos.get();
+    }
+
+    /**
+     * Get the number of calls to <code>Types.isAssignableFrom</code>.
+     *
+     * @return The number of calls.
+     */
+    public long getAssignableCount() {
+        return ASSIGNABLE.count.get();
+    }
+
+    /**
+     * Get the cumulative nanoseconds spent in
+     * <code>Types.isAssignableFrom</code>.
+     *
+     * @return The cumulative nanoseconds.
+     */
+    public long getAssignableNanos() {
+        return ASSIGNABLE.nanos.get();
+    }
+
+    /**
+     * Get the longest call to <code>Types.isAssignableFrom</code> in
+     * nanoseconds.
+     *
+     * @return The maximum nanoseconds.
+     */
+    public long getAssignableMaxNanos() {
+        return ASSIGNABLE.maxNanos.get();
+    }
+
+    /**
+     * Get the number of calls to <code>Ilk.Box.cast</code>.
+     *
+     * @return The number of calls.
+     */
+    public long getCastCount() {
+        return CAST.count.get();
+    }
+
+    /**
+     * Get the cumulative nanoseconds spent in <code>Ilk.Box.cast</code>.
+     *
+     * @return The cumulative nanoseconds.
+     */
+    public long getCastNanos() {
+        return CAST.nanos.get();
+    }
+
+    /**
+     * Get the longest call to <code>Ilk.Box.cast</code> in nanoseconds.
+     *
+     * @return The maximum nanoseconds.
+     */
+    public long getCastMaxNanos() {
+        return CAST.maxNanos.get();
+    }
+
+    /**
+     * Get the number of calls to <code>Ilk.Box.cast</code> that raised a
+     * <code>ClassCastException</code>.
+     *
+     * @return The number of failed casts.
+     */
+    public long getFailedCastCount() {
+        return FAILED_CASTS.get();
+    }
+
+    /**
+     * Get the histogram of the depths of the type trees resolved by the
+     * instrumented calls.
+     *
+     * @return The depth histogram.
+     */
+    public long[] getDepthHistogram() {
+        long[] histogram = new long[DEPTH_BUCKETS];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = DEPTHS.get(i);
+        }
+        return histogram;
+    }
+
+    /**
+     * Get the number of live canonical keys.
+     *
+     * @return The number of canonical keys.
+     */
+    public int getKeyCount() {
+        return KeyTable.size();
+    }
+
+    /**
+     * Get the number of results in the assignability cache.
+     *
+     * @return The size of the assignability cache.
+     */
+    public int getAssignableCacheSize() {
+        AssignableCache cache = AssignableCache.getInstance();
+        return cache == null ? 0 : cache.size();
+    }
+
+    /**
+     * Get the number of assignability tests answered from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getAssignableCacheHitCount() {
+        AssignableCache cache = AssignableCache.getInstance();
+        return cache == null ? 0 : cache.getHitCount();
+    }
+
+    /**
+     * Get the number of assignability tests that had to be calculated.
+     *
+     * @return The number of cache misses.
+     */
+    public long getAssignableCacheMissCount() {
+        AssignableCache cache = AssignableCache.getInstance();
+        return cache == null ? 0 : cache.getMissCount();
+    }
+
+    /** Reset the call counts, timings and histogram. */
+    public void reset() {
+        ACTUAL_TYPE.reset();
+        ASSIGNABLE.reset();
+        CAST.reset();
+        FAILED_CASTS.set(0);
+        for (int i = 0; i < DEPTH_BUCKETS; i++) {
+            DEPTHS.set(i, 0);
+        }
+    }
+}
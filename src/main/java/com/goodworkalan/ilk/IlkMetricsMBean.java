@@ -0,0 +1,131 @@
+package com.goodworkalan.ilk;
+
+/**
+ * The management interface of the type resolution metrics of Ilk.
+ *
+ * @author Alan Gutierrez
+ */
+public interface IlkMetricsMBean {
+    /**
+     * Get whether metrics are being recorded.
+     *
+     * @return True if metrics are being recorded.
+     */
+    public boolean isEnabled();
+
+    /**
+     * Get the number of calls to <code>Types.getActualType</code>.
+     *
+     * @return The number of calls.
+     */
+    public long getActualTypeCount();
+
+    /**
+     * Get the cumulative nanoseconds spent in
+     * <code>Types.getActualType</code>.
+     *
+     * @return The cumulative nanoseconds.
+     */
+    public long getActualTypeNanos();
+
+    /**
+     * Get the longest call to <code>Types.getActualType</code> in
+     * nanoseconds.
+     *
+     * @return The maximum nanoseconds.
+     */
+    public long getActualTypeMaxNanos();
+
+    /**
+     * Get the number of calls to <code>Types.isAssignableFrom</code>.
+     *
+     * @return The number of calls.
+     */
+    public long getAssignableCount();
+
+    /**
+     * Get the cumulative nanoseconds spent in
+     * <code>Types.isAssignableFrom</code>.
+     *
+     * @return The cumulative nanoseconds.
+     */
+    public long getAssignableNanos();
+
+    /**
+     * Get the longest call to <code>Types.isAssignableFrom</code> in
+     * nanoseconds.
+     *
+     * @return The maximum nanoseconds.
+     */
+    public long getAssignableMaxNanos();
+
+    /**
+     * Get the number of calls to <code>Ilk.Box.cast</code>.
+     *
+     * @return The number of calls.
+     */
+    public long getCastCount();
+
+    /**
+     * Get the cumulative nanoseconds spent in <code>Ilk.Box.cast</code>.
+     *
+     * @return The cumulative nanoseconds.
+     */
+    public long getCastNanos();
+
+    /**
+     * Get the longest call to <code>Ilk.Box.cast</code> in nanoseconds.
+     *
+     * @return The maximum nanoseconds.
+     */
+    public long getCastMaxNanos();
+
+    /**
+     * Get the number of calls to <code>Ilk.Box.cast</code> that raised a
+     * <code>ClassCastException</code>.
+     *
+     * @return The number of failed casts.
+     */
+    public long getFailedCastCount();
+
+    /**
+     * Get the histogram of the depths of the type trees resolved by the
+     * instrumented calls, which bound the depth of their recursion. The
+     * element at index <code>i</code> is the number of calls with a depth of
+     * <code>i + 1</code>, and the last element counts all deeper calls.
+     *
+     * @return The depth histogram.
+     */
+    public long[] getDepthHistogram();
+
+    /**
+     * Get the number of live canonical keys.
+     *
+     * @return The number of canonical keys.
+     */
+    public int getKeyCount();
+
+    /**
+     * Get the number of results in the assignability cache.
+     *
+     * @return The size of the assignability cache.
+     */
+    public int getAssignableCacheSize();
+
+    /**
+     * Get the number of assignability tests answered from the cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getAssignableCacheHitCount();
+
+    /**
+     * Get the number of assignability tests that had to be calculated.
+     *
+     * @return The number of cache misses.
+     */
+    public long getAssignableCacheMissCount();
+
+    /** Reset the call counts, timings and histogram. */
+    public void reset();
+}
@@ -0,0 +1,111 @@
+package com.goodworkalan.ilk;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An object output stream that writes objects as records tagged with the key
+ * of their super type token, to be read back with the type checked by an
+ * {@link IlkInputStream}.
+ * <p>
+ * Each distinct key is written once into a type table local to the stream
+ * and thereafter written as its index in the table. The keys are written
+ * using a {@link TypeCodec} that shares its string table across the stream.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkOutputStream extends ObjectOutputStream {
+    /** The size of the buffer used to write to a channel. */
+    static final int CHANNEL_BUFFER_SIZE = 64 * 1024;
+
+    /** The index of each key written to the type table. */
+    private final Map<Ilk.Key, Integer> table = new HashMap<Ilk.Key, Integer>();
+
+    /** The encoder of keys written to the type table. */
+    private final TypeCodec.Encoder encoder;
+
+    /**
+     * Create an ilk output stream that writes to the given output stream.
+     *
+     * @param out
+     *            The output stream.
+     * @throws IOException
+     *             If an I/O error occurs writing the stream header.
+     */
+    public IlkOutputStream(OutputStream out) throws IOException {
+        super(out);
+        this.encoder = new TypeCodec.Encoder(this);
+    }
+
+    /**
+     * Create an ilk output stream that writes to the given channel through a
+     * buffer, for writing a large number of records to a file.
+     *
+     * @param channel
+     *            The channel.
+     * @throws IOException
+     *             If an I/O error occurs writing the stream header.
+     */
+    public IlkOutputStream(WritableByteChannel channel) throws IOException {
+        this(new BufferedOutputStream(Channels.newOutputStream(channel), CHANNEL_BUFFER_SIZE));
+    }
+
+    /**
+     * Write the key of the given super type token followed by the given
+     * object.
+     *
+     * @param <T>
+     *            The type of object.
+     * @param ilk
+     *            The super type token of the type of object.
+     * @param object
+     *            The object.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    public <T> void writeObject(Ilk<T> ilk, T object) throws IOException {
+        writeKey(ilk.key);
+        writeObject(object);
+    }
+
+    /**
+     * Write the key of the given box followed by the object in the box.
+     *
+     * @param box
+     *            The box.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    public void writeBox(Ilk.Box box) throws IOException {
+        writeKey(box.key);
+        writeObject(box.object);
+    }
+
+    /**
+     * Write the given key as an index into the type table, adding the key to
+     * the type table if it has not been written before. A new key is written
+     * as zero followed by the encoded type, and an existing key is written as
+     * its index plus one.
+     *
+     * @param key
+     *            The key.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    private void writeKey(Ilk.Key key) throws IOException {
+        Integer index = table.get(key);
+        if (index == null) {
+            table.put(key, table.size());
+            TypeCodec.writeInteger(this, 0);
+            encoder.write(key.type);
+        } else {
+            TypeCodec.writeInteger(this, index + 1);
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package com.goodworkalan.ilk;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Resolves the super type tokens and generic member types of a set of classes
+ * in parallel at startup, so that the hierarchy templates, method indexes,
+ * canonical keys and compiled matchers are created before the first requests
+ * arrive.
+ * <p>
+ * For each class, the warm-up creates the hierarchy template and method index
+ * of the class. If the class is an anonymous subclass of <code>Ilk</code>, it
+ * resolves the key of the subclass and compiles its matcher. It then builds
+ * the hierarchy templates of the types of the public fields, methods and
+ * constructors declared by the class, and interns the keys of those types
+ * that contain no type variables. A type such as <code>Map&lt;K, T&gt;</code>
+ * is only meaningful once its type variables are assigned, so no caller would
+ * look up its key.
+ * <p>
+ * Canonical keys are held weakly by the key table, so the warm-up holds a
+ * strong reference to each key it resolves. An application that keeps the
+ * warm-up keeps the keys canonical along with their cached hash codes and
+ * matchers.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkWarmUp {
+    /**
+     * Receives a notification as each class is warmed.
+     *
+     * @author Alan Gutierrez
+     */
+    public interface Progress {
+        /**
+         * Called after the given class is warmed, from the thread that warmed
+         * it.
+         *
+         * @param type
+         *            The class.
+         * @param nanos
+         *            The time taken to warm the class in nanoseconds.
+         * @param completed
+         *            The number of classes warmed so far.
+         * @param total
+         *            The total number of classes to warm.
+         */
+        public void warmed(Class<?> type, long nanos, int completed, int total);
+    }
+
+    /** The pool that warms the classes. */
+    private final ForkJoinPool pool;
+
+    /** The receiver of progress notifications or null. */
+    private final Progress progress;
+
+    /** The canonical keys resolved by the warm-up. */
+    private final Set<Ilk.Key> keys = Collections.newSetFromMap(new ConcurrentHashMap<Ilk.Key, Boolean>());
+
+    /**
+     * Create a warm-up that warms classes with the given pool and reports its
+     * progress to the given receiver.
+     *
+     * @param pool
+     *            The fork join pool.
+     * @param progress
+     *            The receiver of progress notifications or null.
+     */
+    public IlkWarmUp(ForkJoinPool pool, Progress progress) {
+        this.pool = pool;
+        this.progress = progress;
+    }
+
+    /**
+     * Create a warm-up that warms classes with the common pool and does not
+     * report its progress.
+     */
+    public IlkWarmUp() {
+        this(ForkJoinPool.commonPool(), null);
+    }
+
+    /**
+     * Get the number of canonical keys held by this warm-up.
+     *
+     * @return The number of keys.
+     */
+    public int getKeyCount() {
+        return keys.size();
+    }
+
+    /**
+     * Warm the classes in the given package and its subpackages found with the
+     * given class loader.
+     *
+     * @param packageName
+     *            The package name.
+     * @param classLoader
+     *            The class loader.
+     * @return A report of the warm-up.
+     * @throws IOException
+     *             If an I/O error occurs reading the class path.
+     */
+    public Report warmUp(String packageName, ClassLoader classLoader) throws IOException {
+        return warmUp(scan(packageName, classLoader));
+    }
+
+    /**
+     * Warm the given classes in parallel, returning when every class has been
+     * warmed. A class that cannot be warmed because its generic signatures
+     * cannot be resolved is recorded as a failure in the report and does not
+     * prevent the other classes from being warmed.
+     *
+     * @param classes
+     *            The classes.
+     * @return A report of the warm-up.
+     */
+    public Report warmUp(Collection<Class<?>> classes) {
+        long start = System.nanoTime();
+        int keyCount = keys.size();
+        Class<?>[] types = classes.toArray(new Class<?>[classes.size()]);
+        Map<Class<?>, Throwable> failures = new ConcurrentHashMap<Class<?>, Throwable>();
+        pool.invoke(new WarmUp(types, 0, types.length, new AtomicInteger(), failures));
+        return new Report(types.length, keys.size() - keyCount, System.nanoTime() - start, failures);
+    }
+
+    /**
+     * Warm the given class.
+     *
+     * @param type
+     *            The class.
+     */
+    private void warm(Class<?> type) {
+        Hierarchy.getInstance(type);
+        MethodIndex.get(type);
+        if (type.getSuperclass() == Ilk.class && type.getGenericSuperclass() instanceof ParameterizedType) {
+            Ilk.Key key = Ilk.getKey(type);
+            warm(key.type);
+            key.compileMatcher();
+        }
+        for (Field field : type.getDeclaredFields()) {
+            if (Modifier.isPublic(field.getModifiers()) && !field.isSynthetic()) {
+                warm(field.getGenericType());
+            }
+        }
+        for (Method method : type.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers()) && !method.isSynthetic()) {
+                warm(method.getGenericReturnType());
+                for (Type parameterType : method.getGenericParameterTypes()) {
+                    warm(parameterType);
+                }
+            }
+        }
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (Modifier.isPublic(constructor.getModifiers())) {
+                for (Type parameterType : constructor.getGenericParameterTypes()) {
+                    warm(parameterType);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the hierarchy template of the raw class of the given type if it is
+     * a class or parameterized type, and intern the key of the type if it
+     * contains no type variables.
+     *
+     * @param type
+     *            The type.
+     */
+    private void warm(Type type) {
+        if (type instanceof Class<?> && ((Class<?>) type).isPrimitive()) {
+            return;
+        }
+        Class<?> rawClass = Types.getRawClass(type);
+        if (rawClass != null) {
+            Hierarchy.getInstance(rawClass);
+        }
+        if (isActual(type)) {
+            keys.add(new Ilk.Key(type).intern());
+        }
+    }
+
+    /**
+     * Determine whether the given type contains no type variables.
+     *
+     * @param type
+     *            The type.
+     * @return True if the type contains no type variables.
+     */
+    private static boolean isActual(Type type) {
+        List<Type> stack = new ArrayList<Type>();
+        stack.add(type);
+        while (!stack.isEmpty()) {
+            Type top = stack.remove(stack.size() - 1);
+            if (top instanceof TypeVariable<?>) {
+                return false;
+            } else if (top instanceof ParameterizedType) {
+                ParameterizedType pt = (ParameterizedType) top;
+                if (pt.getOwnerType() != null) {
+                    stack.add(pt.getOwnerType());
+                }
+                stack.addAll(Arrays.asList(Types.getArguments(pt)));
+            } else if (top instanceof WildcardType) {
+                WildcardType wt = (WildcardType) top;
+                stack.addAll(Arrays.asList(Types.getLowerBounds(wt)));
+                stack.addAll(Arrays.asList(Types.getUpperBounds(wt)));
+            } else if (top instanceof GenericArrayType) {
+                stack.add(((GenericArrayType) top).getGenericComponentType());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the classes in the given package and its subpackages with the given
+     * class loader, in directories and jar files on the class path. The classes
+     * are loaded but not initialized. Classes that cannot be loaded are
+     * skipped.
+     *
+     * @param packageName
+     *            The package name.
+     * @param classLoader
+     *            The class loader.
+     * @return A list of the classes in the package.
+     * @throws IOException
+     *             If an I/O error occurs reading the class path.
+     */
+    public static List<Class<?>> scan(String packageName, ClassLoader classLoader) throws IOException {
+        String path = packageName.replace('.', '/');
+        Map<String, Class<?>> classes = new LinkedHashMap<String, Class<?>>();
+        Enumeration<URL> resources = classLoader.getResources(path);
+        while (resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            if (url.getProtocol().equals("file")) {
+                File directory;
+                try {
+                    directory = new File(url.toURI());
+                } catch (URISyntaxException e) {
+                    throw (IOException) new IOException(url.toString()).initCause(e);
+                }
+                scan(classes, directory, packageName, classLoader);
+            } else if (url.getProtocol().equals("jar")) {
+                JarFile jar = ((JarURLConnection) url.openConnection()).getJarFile();
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    String name = entries.nextElement().getName();
+                    if (name.startsWith(path + "/") && name.endsWith(".class")) {
+                        load(classes, name.substring(0, name.length() - 6).replace('/', '.'), classLoader);
+                    }
+                }
+            }
+        }
+        return new ArrayList<Class<?>>(classes.values());
+    }
+
+    /**
+     * Find the classes in the given directory and its subdirectories.
+     *
+     * @param classes
+     *            The classes found by name.
+     * @param directory
+     *            The directory of the package.
+     * @param packageName
+     *            The package name.
+     * @param classLoader
+     *            The class loader.
+     */
+    private static void scan(Map<String, Class<?>> classes, File directory, String packageName, ClassLoader classLoader) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isDirectory()) {
+                    scan(classes, file, packageName + "." + name, classLoader);
+                } else if (name.endsWith(".class")) {
+                    load(classes, packageName + "." + name.substring(0, name.length() - 6), classLoader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the class with the given name without initializing it, skipping
+     * package and module descriptors and classes that cannot be loaded.
+     *
+     * @param classes
+     *            The classes found by name.
+     * @param className
+     *            The class name.
+     * @param classLoader
+     *            The class loader.
+     */
+    private static void load(Map<String, Class<?>> classes, String className, ClassLoader classLoader) {
+        if (className.endsWith("package-info") || className.endsWith("module-info") || classes.containsKey(className)) {
+            return;
+        }
+        try {
+            classes.put(className, Class.forName(className, false, classLoader));
+        } catch (ClassNotFoundException e) {
+            // Skip classes that cannot be loaded.
+        } catch (LinkageError e) {
+            // Skip classes whose dependencies are missing.
+        }
+    }
+
+    /**
+     * A task that warms a range of classes, splitting the range until it
+     * contains a single class.
+     *
+     * @author Alan Gutierrez
+     */
+    private final class WarmUp extends RecursiveAction {
+        /** The serial version id. */
+        private static final long serialVersionUID = 1L;
+
+        /** The classes. */
+        private final Class<?>[] types;
+
+        /** The start of the range. */
+        private final int from;
+
+        /** The end of the range, exclusive. */
+        private final int to;
+
+        /** The number of classes warmed so far. */
+        private final AtomicInteger completed;
+
+        /** The classes that could not be warmed. */
+        private final Map<Class<?>, Throwable> failures;
+
+        /**
+         * Create a task that warms the given range of the given classes.
+         *
+         * @param types
+         *            The classes.
+         * @param from
+         *            The start of the range.
+         * @param to
+         *            The end of the range, exclusive.
+         * @param completed
+         *            The number of classes warmed so far.
+         * @param failures
+         *            The classes that could not be warmed.
+         */
+        public WarmUp(Class<?>[] types, int from, int to, AtomicInteger completed, Map<Class<?>, Throwable> failures) {
+            this.types = types;
+            this.from = from;
+            this.to = to;
+            this.completed = completed;
+            this.failures = failures;
+        }
+
+        /**
+         * Warm the single class in the range or split the range in two.
+         */
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new WarmUp(types, from, middle, completed, failures), new WarmUp(types, middle, to, completed, failures));
+            } else if (to - from == 1) {
+                long start = System.nanoTime();
+                try {
+                    warm(types[from]);
+                } catch (RuntimeException e) {
+                    failures.put(types[from], e);
+                } catch (LinkageError e) {
+                    failures.put(types[from], e);
+                }
+                int count = completed.incrementAndGet();
+                if (progress != null) {
+                    progress.warmed(types[from], System.nanoTime() - start, count, types.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * A report of the classes warmed, the keys resolved and the time taken by
+     * a warm-up.
+     *
+     * @author Alan Gutierrez
+     */
+    public final static class Report {
+        /** The number of classes warmed. */
+        public final int classCount;
+
+        /** The number of canonical keys added by the warm-up. */
+        public final int keyCount;
+
+        /** The time taken in nanoseconds. */
+        public final long nanos;
+
+        /** The classes that could not be warmed and the cause of failure. */
+        public final Map<Class<?>, Throwable> failures;
+
+        /**
+         * Create a warm-up report.
+         *
+         * @param classCount
+         *            The number of classes warmed.
+         * @param keyCount
+         *            The number of canonical keys added by the warm-up.
+         * @param nanos
+         *            The time taken in nanoseconds.
+         * @param failures
+         *            The classes that could not be warmed.
+         */
+        Report(int classCount, int keyCount, long nanos, Map<Class<?>, Throwable> failures) {
+            this.classCount = classCount;
+            this.keyCount = keyCount;
+            this.nanos = nanos;
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * Create a string representation of this report.
+         *
+         * @return A string representation of this object.
+         */
+        public String toString() {
+            return "Warmed " + classCount + " classes, " + keyCount + " keys, " + failures.size() + " failures in " + (nanos / 1000000) + " ms";
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.goodworkalan.ilk;
+
+/**
+ * A box that contains an <code>int</code> value with the key of
+ * <code>Integer</code>, so that counters and measurements can be passed along
+ * typed paths without boxing the value into an <code>Integer</code>.
+ * <p>
+ * The key of a box is verified once, when the box is created from an
+ * {@link Ilk.Box}, and the value is thereafter read with {@link #getInt()}
+ * without a check or an allocation. The box can be converted to and from an
+ * <code>Ilk.Box</code>, and can be cast to any super type of
+ * <code>Integer</code> in the same way as an <code>Ilk.Box</code>.
+ *
+ * @author Alan Gutierrez
+ */
+public final class IntBox extends PrimitiveBox {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /** The key of every <code>int</code> box. */
+    public static final Ilk.Key KEY = new Ilk.Key(Integer.class).intern();
+
+    /** The value. */
+    private final int value;
+
+    /**
+     * Create a box that contains the given value.
+     *
+     * @param value
+     *            The value.
+     */
+    public IntBox(int value) {
+        this.value = value;
+    }
+
+    /**
+     * Create a box that contains the value of the given box.
+     *
+     * @param box
+     *            The box.
+     * @exception ClassCastException
+     *                If the key of the box is not the key of
+     *                <code>Integer</code> or if the box contains null.
+     */
+    public IntBox(Ilk.Box box) {
+        this.value = (Integer) unbox(KEY, box);
+    }
+
+    /**
+     * Get the key of the box, the key of <code>Integer</code>.
+     *
+     * @return The key.
+     */
+    public Ilk.Key getKey() {
+        return KEY;
+    }
+
+    /**
+     * Get the value.
+     *
+     * @return The value.
+     */
+    public int getInt() {
+        return value;
+    }
+
+    /**
+     * Cast the value to the given class, boxing it.
+     *
+     * @param <C>
+     *            The type to cast to.
+     * @param castClass
+     *            The class to cast to.
+     * @return The value as an <code>Integer</code> cast to the class.
+     * @exception ClassCastException
+     *                If the class is not a super type of <code>Integer</code>.
+     */
+    public <C> C cast(Class<C> castClass) {
+        // Integer is not generic, so the test of the raw class is exact.
+        if (!castClass.isAssignableFrom(Integer.class)) {
+            throw new ClassCastException();
+        }
+        return castClass.cast(value);
+    }
+
+    /**
+     * Cast the value to the type of the given super type token, boxing it.
+     *
+     * @param <C>
+     *            The type to cast to.
+     * @param ilk
+     *            The super type token of the type to cast to.
+     * @return The value as an <code>Integer</code> cast to the type.
+     * @exception ClassCastException
+     *                If the type is not a super type of <code>Integer</code>.
+     */
+    public <C> C cast(Ilk<C> ilk) {
+        return box().cast(ilk);
+    }
+
+    /**
+     * Create an <code>Ilk.Box</code> that contains the value as an
+     * <code>Integer</code>.
+     *
+     * @return A box containing the value.
+     */
+    public Ilk.Box box() {
+        return new Ilk.Box(KEY, value);
+    }
+
+    /**
+     * Create a string representation of this box in the form of an
+     * <code>Ilk.Box</code>.
+     *
+     * @return A string representation of this object.
+     */
+    public String toString() {
+        return "{" + KEY + "=" + value + "}";
+    }
+}
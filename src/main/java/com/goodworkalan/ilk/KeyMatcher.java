@@ -0,0 +1,305 @@
+package com.goodworkalan.ilk;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.LinkedList;
+
+/**
+ * A predicate compiled from a target type that determines whether other types
+ * can be assigned to the target type, with the same result as
+ * {@link Types#isAssignableFrom(Type, Type) Types.isAssignableFrom}.
+ * <p>
+ * The structure of the target type is examined once when the matcher is
+ * compiled. The raw class, the actual type arguments, the kind of each type
+ * argument and the bounds of any wildcard type arguments are extracted into a
+ * tree of small predicates, so that a test against the target only has to
+ * examine the type being assigned.
+ *
+ * @author Alan Gutierrez
+ */
+public abstract class KeyMatcher {
+    /**
+     * Compile a matcher for the given target type.
+     *
+     * @param to
+     *            The type to assign to.
+     * @return A matcher that tests assignability to the given type.
+     */
+    static KeyMatcher compile(Type to) {
+        if (to instanceof Class<?>) {
+            return new ClassMatcher((Class<?>) to);
+        }
+        if (to instanceof ParameterizedType) {
+            Type[] arguments = Types.getArguments((ParameterizedType) to);
+            ArgumentMatcher[] matchers = new ArgumentMatcher[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                if (arguments[i] instanceof WildcardType) {
+                    matchers[i] = new WildcardMatcher((WildcardType) arguments[i]);
+                } else {
+                    matchers[i] = new EqualsMatcher(arguments[i]);
+                }
+            }
+            return new ParameterizedMatcher(Types.getRawClass(to), matchers);
+        }
+        return new TypeMatcher(to);
+    }
+
+    /**
+     * Determine if the type of the given key can be assigned to the target
+     * type of this matcher.
+     *
+     * @param key
+     *            The key to assign from.
+     * @return True if the type of the key can be assigned to the target type.
+     */
+    public boolean isAssignableFrom(Ilk.Key key) {
+        return isAssignableFrom(key.type);
+    }
+
+    /**
+     * Determine if the given type can be assigned to the target type of this
+     * matcher.
+     *
+     * @param from
+     *            The type to assign from.
+     * @return True if the type can be assigned to the target type.
+     */
+    public abstract boolean isAssignableFrom(Type from);
+
+    /**
+     * A matcher for a class target that only needs to test the raw class of
+     * the type assigned.
+     */
+    private final static class ClassMatcher extends KeyMatcher {
+        /** The class to assign to. */
+        private final Class<?> to;
+
+        /**
+         * Create a class matcher.
+         *
+         * @param to
+         *            The class to assign to.
+         */
+        public ClassMatcher(Class<?> to) {
+            this.to = to;
+        }
+
+        /**
+         * Determine if the given type can be assigned to the target type.
+         *
+         * @param from
+         *            The type to assign from.
+         * @return True if the type can be assigned to the target type.
+         */
+        @Override
+        public boolean isAssignableFrom(Type from) {
+            return to.isAssignableFrom(Types.getRawClass(from));
+        }
+    }
+
+    /**
+     * A matcher for a parameterized type target that tests the raw class of
+     * the type assigned and then tests each of the actual type arguments of
+     * the type assigned, actualized against the raw target class, with a
+     * matcher compiled for the type argument of the target.
+     */
+    private final static class ParameterizedMatcher extends KeyMatcher {
+        /** The raw class of the parameterized type to assign to. */
+        private final Class<?> rawClass;
+
+        /** The matchers for each of the actual type arguments. */
+        private final ArgumentMatcher[] arguments;
+
+        /**
+         * Create a parameterized type matcher.
+         *
+         * @param rawClass
+         *            The raw class of the parameterized type to assign to.
+         * @param arguments
+         *            The matchers for each of the actual type arguments.
+         */
+        public ParameterizedMatcher(Class<?> rawClass, ArgumentMatcher[] arguments) {
+            this.rawClass = rawClass;
+            this.arguments = arguments;
+        }
+
+        /**
+         * Determine if the given type can be assigned to the target type.
+         *
+         * @param from
+         *            The type to assign from.
+         * @return True if the type can be assigned to the target type.
+         */
+        @Override
+        public boolean isAssignableFrom(Type from) {
+            if (!rawClass.isAssignableFrom(Types.getRawClass(from))) {
+                return false;
+            }
+            ParameterizedType actualFrom = (ParameterizedType) Types.actualize(rawClass, from, new LinkedList<Assignments>());
+            Type[] typesFrom = Types.getArguments(actualFrom);
+            for (int i = 0; i < arguments.length; i++) {
+                if (!arguments[i].matches(typesFrom[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A matcher for targets that are neither classes nor parameterized types
+     * that defers to the general implementation.
+     */
+    private final static class TypeMatcher extends KeyMatcher {
+        /** The type to assign to. */
+        private final Type to;
+
+        /**
+         * Create a general type matcher.
+         *
+         * @param to
+         *            The type to assign to.
+         */
+        public TypeMatcher(Type to) {
+            this.to = to;
+        }
+
+        /**
+         * Determine if the given type can be assigned to the target type.
+         *
+         * @param from
+         *            The type to assign from.
+         * @return True if the type can be assigned to the target type.
+         */
+        @Override
+        public boolean isAssignableFrom(Type from) {
+            return Types.isAssignableFrom(to, from);
+        }
+    }
+
+    /**
+     * A test of an actual type argument of the assigned type against the
+     * actual type argument at the same position in the target type.
+     */
+    private static abstract class ArgumentMatcher {
+        /**
+         * Determine if the given actual type argument of the assigned type
+         * matches the target actual type argument.
+         *
+         * @param from
+         *            The actual type argument of the assigned type.
+         * @return True if the type argument matches.
+         */
+        public abstract boolean matches(Type from);
+    }
+
+    /** A test that a type argument is equal to the target type argument. */
+    private final static class EqualsMatcher extends ArgumentMatcher {
+        /** The target type argument. */
+        private final Type to;
+
+        /**
+         * Create an equality test.
+         *
+         * @param to
+         *            The target type argument.
+         */
+        public EqualsMatcher(Type to) {
+            this.to = to;
+        }
+
+        /**
+         * Determine if the given actual type argument of the assigned type
+         * matches the target actual type argument.
+         *
+         * @param from
+         *            The actual type argument of the assigned type.
+         * @return True if the type argument matches.
+         */
+        @Override
+        public boolean matches(Type from) {
+            return Types.equals(to, from);
+        }
+    }
+
+    /**
+     * A test that a type argument is within the bounds of a target wildcard
+     * type argument, or is an equal wildcard. The bounds of the wildcard, and
+     * the bounds of any type variable upper bounds, are extracted when the
+     * matcher is compiled. The tests are those of
+     * {@link Types#checkWildcardType(WildcardType, Type, boolean)
+     * Types.checkWildcardType}.
+     */
+    private final static class WildcardMatcher extends ArgumentMatcher {
+        /** The target wildcard. */
+        private final WildcardType to;
+
+        /** The lower bounds of the wildcard. */
+        private final Type[] lower;
+
+        /**
+         * The upper bounds of the wildcard, where an upper bound that is a
+         * type variable is replaced by the bounds of the type variable.
+         */
+        private final Type[][] upper;
+
+        /** Whether the upper bound at the same index is a type variable. */
+        private final boolean[] variable;
+
+        /**
+         * Create a wildcard test.
+         *
+         * @param to
+         *            The target wildcard.
+         */
+        public WildcardMatcher(WildcardType to) {
+            this.to = to;
+            this.lower = to.getLowerBounds();
+            Type[] upperBounds = to.getUpperBounds();
+            this.upper = new Type[upperBounds.length][];
+            this.variable = new boolean[upperBounds.length];
+            for (int i = 0; i < upperBounds.length; i++) {
+                if (upperBounds[i] instanceof TypeVariable<?>) {
+                    upper[i] = ((TypeVariable<?>) upperBounds[i]).getBounds();
+                    variable[i] = true;
+                } else {
+                    upper[i] = new Type[] { upperBounds[i] };
+                }
+            }
+        }
+
+        /**
+         * Determine if the given actual type argument of the assigned type
+         * matches the target actual type argument.
+         *
+         * @param from
+         *            The actual type argument of the assigned type.
+         * @return True if the type argument matches.
+         */
+        @Override
+        public boolean matches(Type from) {
+            if (from instanceof WildcardType) {
+                return Types.equals(to, from);
+            }
+            for (int i = 0; i < lower.length; i++) {
+                if (!Types.isParameterAssignableFrom(from, lower[i])) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < upper.length; i++) {
+                for (int j = 0; j < upper[i].length; j++) {
+                    if (variable[i]) {
+                        if (!Types.isParameterAssignableFrom(from, upper[i][j])) {
+                            return false;
+                        }
+                    } else if (!Types.isParameterAssignableFrom(upper[i][j], from)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.goodworkalan.ilk;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A table of canonical {@link Ilk.Key} instances used to intern keys.
+ * <p>
+ * The table is divided into stripes, each a weak hash map guarded by its own
+ * monitor, so that threads interning keys with different hash codes rarely
+ * contend. Keys are weakly referenced both as map keys and as values, so a
+ * canonical key that is no longer referenced outside of the table is garbage
+ * collected and a structurally equal key interned later will become the new
+ * canonical instance.
+ *
+ * @author Alan Gutierrez
+ */
+final class KeyTable {
+    /** The number of stripes, a power of two. */
+    private static final int STRIPE_COUNT = 16;
+
+    /** The weak maps of canonical keys. */
+    private static final Map<?, ?>[] STRIPES = new Map<?, ?>[STRIPE_COUNT];
+
+    static {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            STRIPES[i] = new WeakHashMap<Ilk.Key, WeakReference<Ilk.Key>>();
+        }
+    }
+
+    /** Do not construct a key table. */
+    private KeyTable() {
+    }
+
+    /**
+     * Get the stripe that contains the canonical keys that share the hash code
+     * of the given key.
+     *
+     * @param key
+     *            The key.
+     * @return The stripe for the key.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Ilk.Key, WeakReference<Ilk.Key>> getStripe(Ilk.Key key) {
+        int hashCode = key.hashCode();
+        hashCode ^= (hashCode >>> 16);
+        return (Map<Ilk.Key, WeakReference<Ilk.Key>>) STRIPES[hashCode & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * Return the canonical key that is structurally equal to the given key. If
+     * there is no canonical key for the given key, the given key is marked as
+     * canonical, added to the table and returned.
+     *
+     * @param key
+     *            The key to intern.
+     * @return The canonical key.
+     */
+    static Ilk.Key intern(Ilk.Key key) {
+        Map<Ilk.Key, WeakReference<Ilk.Key>> stripe = getStripe(key);
+        synchronized (stripe) {
+            WeakReference<Ilk.Key> reference = stripe.get(key);
+            Ilk.Key canonical = reference == null ? null : reference.get();
+            if (canonical == null) {
+                key.canonical = true;
+                stripe.put(key, new WeakReference<Ilk.Key>(key));
+                canonical = key;
+            }
+            return canonical;
+        }
+    }
+
+    /**
+     * Get the number of canonical keys in the table. Keys that have been
+     * garbage collected but not yet expunged may be counted.
+     *
+     * @return The number of canonical keys.
+     */
+    static int size() {
+        int size = 0;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            synchronized (STRIPES[i]) {
+                size += STRIPES[i].size();
+            }
+        }
+        return size;
+    }
+}
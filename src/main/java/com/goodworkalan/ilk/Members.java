@@ -0,0 +1,319 @@
+package com.goodworkalan.ilk;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable table of the public methods, fields and constructors of the
+ * raw class of a key, with their generic types actualized by the type of the
+ * key through the class hierarchy.
+ * <p>
+ * For the key <code>FooMap&lt;String, Integer&gt;</code>, where
+ * <code>FooMap&lt;Z, A&gt;</code> extends <code>TreeMap&lt;A, Z&gt;</code>,
+ * the return type of <code>get</code> is <code>String</code> and the return
+ * type of <code>entrySet</code> is
+ * <code>Set&lt;Map.Entry&lt;Integer, String&gt;&gt;</code>. Type variables
+ * declared by generic methods are not assigned.
+ * <p>
+ * A member table is obtained with {@link Ilk.Key#members()}, which creates
+ * the table once for each canonical key and shares it across threads.
+ *
+ * @author Alan Gutierrez
+ */
+public final class Members {
+    /** The key whose members are resolved. */
+    public final Ilk.Key key;
+
+    /** The public methods. */
+    private final List<MethodMember> methods;
+
+    /** The public methods by name. */
+    private final Map<String, List<MethodMember>> methodsByName;
+
+    /** The public fields. */
+    private final List<FieldMember> fields;
+
+    /** The public fields by name. */
+    private final Map<String, FieldMember> fieldsByName;
+
+    /** The public constructors. */
+    private final List<ConstructorMember> constructors;
+
+    /**
+     * Resolve the members of the raw class of the given key.
+     *
+     * @param key
+     *            The key.
+     * @exception IllegalArgumentException
+     *                If the key is not a class or a parameterized type.
+     */
+    Members(Ilk.Key key) {
+        Class<?> rawClass = Types.getRawClass(key.type);
+        if (rawClass == null) {
+            throw new IllegalArgumentException();
+        }
+        this.key = key;
+        List<MethodMember> methods = new ArrayList<MethodMember>();
+        Map<String, List<MethodMember>> methodsByName = new HashMap<String, List<MethodMember>>();
+        for (Method method : rawClass.getMethods()) {
+            if (!method.isBridge() && !method.isSynthetic()) {
+                MethodMember member = new MethodMember(method, resolve(method.getGenericReturnType()), resolve(method.getGenericParameterTypes()));
+                methods.add(member);
+                List<MethodMember> named = methodsByName.get(method.getName());
+                if (named == null) {
+                    named = new ArrayList<MethodMember>();
+                    methodsByName.put(method.getName(), named);
+                }
+                named.add(member);
+            }
+        }
+        for (Map.Entry<String, List<MethodMember>> entry : methodsByName.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        List<FieldMember> fields = new ArrayList<FieldMember>();
+        Map<String, FieldMember> fieldsByName = new HashMap<String, FieldMember>();
+        for (Field field : rawClass.getFields()) {
+            FieldMember member = new FieldMember(field, resolve(field.getGenericType()));
+            fields.add(member);
+            // Fields hide fields of the same name in super types, which are
+            // listed after them.
+            if (!fieldsByName.containsKey(field.getName())) {
+                fieldsByName.put(field.getName(), member);
+            }
+        }
+        List<ConstructorMember> constructors = new ArrayList<ConstructorMember>();
+        for (Constructor<?> constructor : rawClass.getConstructors()) {
+            constructors.add(new ConstructorMember(constructor, resolve(constructor.getGenericParameterTypes())));
+        }
+        this.methods = Collections.unmodifiableList(methods);
+        this.methodsByName = methodsByName;
+        this.fields = Collections.unmodifiableList(fields);
+        this.fieldsByName = fieldsByName;
+        this.constructors = Collections.unmodifiableList(constructors);
+    }
+
+    /**
+     * Actualize the given generic type of a member through the type of the
+     * key and return the canonical key of the actual type.
+     *
+     * @param type
+     *            The generic type.
+     * @return The canonical key of the actual type.
+     */
+    private Ilk.Key resolve(Type type) {
+        return new Ilk.Key(Types.actualize(type, key.type, new LinkedList<Assignments>())).intern();
+    }
+
+    /**
+     * Actualize the given generic parameter types of a member.
+     *
+     * @param types
+     *            The generic types.
+     * @return An unmodifiable list of the canonical keys of the actual types.
+     */
+    private List<Ilk.Key> resolve(Type[] types) {
+        if (types.length == 0) {
+            return Collections.emptyList();
+        }
+        Ilk.Key[] keys = new Ilk.Key[types.length];
+        for (int i = 0; i < types.length; i++) {
+            keys[i] = resolve(types[i]);
+        }
+        return Collections.unmodifiableList(Arrays.asList(keys));
+    }
+
+    /**
+     * Get the public methods of the raw class of the key, including those
+     * inherited.
+     *
+     * @return An unmodifiable list of methods.
+     */
+    public List<MethodMember> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Get the public methods with the given name.
+     *
+     * @param name
+     *            The method name.
+     * @return An unmodifiable list of methods, empty if there are none.
+     */
+    public List<MethodMember> getMethods(String name) {
+        List<MethodMember> named = methodsByName.get(name);
+        if (named == null) {
+            return Collections.emptyList();
+        }
+        return named;
+    }
+
+    /**
+     * Get the public method with the given name and erased parameter types.
+     *
+     * @param name
+     *            The method name.
+     * @param parameterTypes
+     *            The erased parameter types.
+     * @return The method or null if there is none.
+     */
+    public MethodMember getMethod(String name, Class<?>... parameterTypes) {
+        for (MethodMember member : getMethods(name)) {
+            if (Arrays.equals(member.method.getParameterTypes(), parameterTypes)) {
+                return member;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the public fields of the raw class of the key, including those
+     * inherited.
+     *
+     * @return An unmodifiable list of fields.
+     */
+    public List<FieldMember> getFields() {
+        return fields;
+    }
+
+    /**
+     * Get the public field with the given name.
+     *
+     * @param name
+     *            The field name.
+     * @return The field or null if there is none.
+     */
+    public FieldMember getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    /**
+     * Get the public constructors of the raw class of the key.
+     *
+     * @return An unmodifiable list of constructors.
+     */
+    public List<ConstructorMember> getConstructors() {
+        return constructors;
+    }
+
+    /**
+     * A method with its return type and parameter types actualized.
+     *
+     * @author Alan Gutierrez
+     */
+    public final static class MethodMember {
+        /** The method. */
+        public final Method method;
+
+        /** The key of the actual return type. */
+        public final Ilk.Key returnType;
+
+        /** The keys of the actual parameter types. */
+        public final List<Ilk.Key> parameterTypes;
+
+        /**
+         * Create a resolved method.
+         *
+         * @param method
+         *            The method.
+         * @param returnType
+         *            The key of the actual return type.
+         * @param parameterTypes
+         *            The keys of the actual parameter types.
+         */
+        MethodMember(Method method, Ilk.Key returnType, List<Ilk.Key> parameterTypes) {
+            this.method = method;
+            this.returnType = returnType;
+            this.parameterTypes = parameterTypes;
+        }
+
+        /**
+         * Create a string representation of the method with its actual
+         * types.
+         *
+         * @return A string representation of this object.
+         */
+        public String toString() {
+            return returnType + " " + method.getName() + parameterTypes.toString().replace('[', '(').replace(']', ')');
+        }
+    }
+
+    /**
+     * A field with its type actualized.
+     *
+     * @author Alan Gutierrez
+     */
+    public final static class FieldMember {
+        /** The field. */
+        public final Field field;
+
+        /** The key of the actual field type. */
+        public final Ilk.Key type;
+
+        /**
+         * Create a resolved field.
+         *
+         * @param field
+         *            The field.
+         * @param type
+         *            The key of the actual field type.
+         */
+        FieldMember(Field field, Ilk.Key type) {
+            this.field = field;
+            this.type = type;
+        }
+
+        /**
+         * Create a string representation of the field with its actual type.
+         *
+         * @return A string representation of this object.
+         */
+        public String toString() {
+            return type + " " + field.getName();
+        }
+    }
+
+    /**
+     * A constructor with its parameter types actualized.
+     *
+     * @author Alan Gutierrez
+     */
+    public final static class ConstructorMember {
+        /** The constructor. */
+        public final Constructor<?> constructor;
+
+        /** The keys of the actual parameter types. */
+        public final List<Ilk.Key> parameterTypes;
+
+        /**
+         * Create a resolved constructor.
+         *
+         * @param constructor
+         *            The constructor.
+         * @param parameterTypes
+         *            The keys of the actual parameter types.
+         */
+        ConstructorMember(Constructor<?> constructor, List<Ilk.Key> parameterTypes) {
+            this.constructor = constructor;
+            this.parameterTypes = parameterTypes;
+        }
+
+        /**
+         * Create a string representation of the constructor with its actual
+         * types.
+         *
+         * @return A string representation of this object.
+         */
+        public String toString() {
+            return constructor.getDeclaringClass().getName() + parameterTypes.toString().replace('[', '(').replace(']', ')');
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.goodworkalan.ilk;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An index of the public methods of a class by name and by name and number of
+ * parameters, built once for each class and shared by all threads.
+ * <p>
+ * <code>Class.getMethods()</code> copies the method array of the class on
+ * each call, and <code>Method.getTypeParameters()</code> copies the type
+ * parameter array of the method on each call. The index holds arrays that are
+ * created once, so lookups do not allocate. The arrays returned are shared,
+ * so the index is only used within this package, where the arrays are never
+ * modified. The public methods of {@link Types} return copies.
+ *
+ * @author Alan Gutierrez
+ */
+final class MethodIndex {
+    /** An empty array of methods. */
+    private static final Method[] NO_METHODS = new Method[0];
+
+    /** The index of each class, released with the class. */
+    private static final ClassValue<MethodIndex> INDEXES = new ClassValue<MethodIndex>() {
+        @Override
+        protected MethodIndex computeValue(Class<?> type) {
+            return new MethodIndex(type);
+        }
+    };
+
+    /** The methods by name. */
+    private final Map<String, Method[]> methods = new HashMap<String, Method[]>();
+
+    /**
+     * The methods by name, then by number of parameters, with an empty array
+     * for each number of parameters with no methods.
+     */
+    private final Map<String, Method[][]> methodsByArity = new HashMap<String, Method[][]>();
+
+    /** The type parameters of each method with a unique name. */
+    private final Map<String, TypeVariable<?>[]> typeParameters = new HashMap<String, TypeVariable<?>[]>();
+
+    /**
+     * Index the public methods of the given class.
+     *
+     * @param type
+     *            The class.
+     */
+    private MethodIndex(Class<?> type) {
+        Map<String, List<Method>> named = new HashMap<String, List<Method>>();
+        for (Method method : type.getMethods()) {
+            List<Method> list = named.get(method.getName());
+            if (list == null) {
+                list = new ArrayList<Method>();
+                named.put(method.getName(), list);
+            }
+            list.add(method);
+        }
+        for (Map.Entry<String, List<Method>> entry : named.entrySet()) {
+            Method[] array = entry.getValue().toArray(new Method[entry.getValue().size()]);
+            int maximumArity = 0;
+            for (Method method : array) {
+                maximumArity = Math.max(maximumArity, method.getParameterTypes().length);
+            }
+            Method[][] byArity = new Method[maximumArity + 1][];
+            for (int arity = 0; arity <= maximumArity; arity++) {
+                List<Method> list = new ArrayList<Method>();
+                for (Method method : array) {
+                    if (method.getParameterTypes().length == arity) {
+                        list.add(method);
+                    }
+                }
+                byArity[arity] = list.isEmpty() ? NO_METHODS : list.toArray(new Method[list.size()]);
+            }
+            methods.put(entry.getKey(), array);
+            methodsByArity.put(entry.getKey(), byArity);
+            if (array.length == 1) {
+                typeParameters.put(entry.getKey(), array[0].getTypeParameters());
+            }
+        }
+    }
+
+    /**
+     * Get the index of the public methods of the given class.
+     *
+     * @param type
+     *            The class.
+     * @return The method index.
+     */
+    public static MethodIndex get(Class<?> type) {
+        return INDEXES.get(type);
+    }
+
+    /**
+     * Get the public methods with the given name.
+     *
+     * @param name
+     *            The method name.
+     * @return A shared array of methods, empty if there are none.
+     */
+    public Method[] getMethods(String name) {
+        Method[] array = methods.get(name);
+        return array == null ? NO_METHODS : array;
+    }
+
+    /**
+     * Get the public methods with the given name and number of parameters.
+     *
+     * @param name
+     *            The method name.
+     * @param arity
+     *            The number of parameters.
+     * @return A shared array of methods, empty if there are none.
+     */
+    public Method[] getMethods(String name, int arity) {
+        Method[][] byArity = methodsByArity.get(name);
+        if (byArity == null || arity < 0 || arity >= byArity.length) {
+            return NO_METHODS;
+        }
+        return byArity[arity];
+    }
+
+    /**
+     * Get the type parameters of the public method with the given name.
+     *
+     * @param name
+     *            The method name.
+     * @return A shared array of type parameters.
+     * @exception IllegalArgumentException
+     *                If there is no public method with the given name or if
+     *                the method is overloaded.
+     */
+    public TypeVariable<?>[] getTypeParameters(String name) {
+        TypeVariable<?>[] array = typeParameters.get(name);
+        if (array == null) {
+            throw new IllegalArgumentException(name);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,36 @@
+package com.goodworkalan.ilk;
+
+import java.io.Serializable;
+
+/**
+ * The base class of the boxes of primitive values, {@link IntBox},
+ * {@link LongBox} and {@link DoubleBox}, with the check of the key and value
+ * of an {@link Ilk.Box} that they share.
+ *
+ * @author Alan Gutierrez
+ */
+abstract class PrimitiveBox implements Serializable {
+    /** The serial version id. */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Get the object of the given box if the key of the box is the given key
+     * of a wrapper class and the object is not null.
+     *
+     * @param key
+     *            The key of the wrapper class.
+     * @param box
+     *            The box.
+     * @return The object of the box.
+     * @exception ClassCastException
+     *                If the key of the box has no raw class, if the key of
+     *                the box is not the given key or if the box contains
+     *                null.
+     */
+    static Object unbox(Ilk.Key key, Ilk.Box box) {
+        if (Types.getRawClass(box.key.type) == null || !key.isAssignableFrom(box.key) || box.object == null) {
+            throw new ClassCastException();
+        }
+        return box.object;
+    }
+}
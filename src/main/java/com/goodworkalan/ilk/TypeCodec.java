@@ -0,0 +1,542 @@
+package com.goodworkalan.ilk;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.GenericDeclaration;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact binary encoding of type trees.
+ * <p>
+ * Class names and method names are written once into a string table and are
+ * thereafter written as an index into the table. Parameterized types,
+ * wildcard types and generic array types are numbered as they are written, so
+ * that a subtree that is structurally equal to a subtree already written is
+ * written as a back reference to the earlier subtree. Type variables are
+ * written as the generic declaration that declares them and their position in
+ * the type parameters of the declaration.
+ * <p>
+ * The string table and the back references are kept by the encoder and the
+ * decoder, so a single encoder can write many types to the same stream, each
+ * type sharing the tables of the types written before it.
+ *
+ * @author Alan Gutierrez
+ */
+public final class TypeCodec {
+    /** A null type. */
+    private static final int NULL = 0;
+
+    /** A class. */
+    private static final int CLASS = 1;
+
+    /** A parameterized type. */
+    private static final int PARAMETERIZED = 2;
+
+    /** A wildcard type. */
+    private static final int WILDCARD = 3;
+
+    /** A generic array type. */
+    private static final int ARRAY = 4;
+
+    /** A type variable declared by a class. */
+    private static final int CLASS_VARIABLE = 5;
+
+    /** A type variable declared by a method. */
+    private static final int METHOD_VARIABLE = 6;
+
+    /** A type variable declared by a constructor. */
+    private static final int CONSTRUCTOR_VARIABLE = 7;
+
+    /** A back reference to a subtree that has already been written. */
+    private static final int REFERENCE = 8;
+
+    /**
+     * The maximum nesting of parameterized types, wildcard types and generic
+     * array types read by a decoder.
+     */
+    static final int MAXIMUM_DEPTH = 1024;
+
+    /** The primitive classes by name, which cannot be loaded by name. */
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+    static {
+        Class<?>[] primitives = new Class<?>[] {
+            boolean.class, byte.class, char.class, short.class, int.class,
+            long.class, float.class, double.class, void.class
+        };
+        for (Class<?> primitive : primitives) {
+            PRIMITIVES.put(primitive.getName(), primitive);
+        }
+    }
+
+    /** Do not construct a type codec. */
+    private TypeCodec() {
+    }
+
+    /**
+     * Write an unsigned variable length integer to the given data output,
+     * seven bits to a byte, with the high bit set on every byte but the last.
+     *
+     * @param out
+     *            The data output.
+     * @param value
+     *            The integer.
+     * @throws IOException
+     *             If an I/O error occurs.
+     */
+    static void writeInteger(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Read an unsigned variable length integer from the given data input.
+     *
+     * @param in
+     *            The data input.
+     * @return The integer.
+     * @throws IOException
+     *             If an I/O error occurs.
+     * @throws StreamCorruptedException
+     *             If the integer is longer than five bytes or does not fit
+     *             in a non-negative <code>int</code>.
+     */
+    static int readInteger(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.readByte();
+            if (shift == 28 && (b & ~0x07) != 0) {
+                throw new StreamCorruptedException("Invalid integer encoding.");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Encodes types to a data output.
+     *
+     * @author Alan Gutierrez
+     */
+    public final static class Encoder {
+        /** The data output. */
+        private final DataOutput out;
+
+        /** The index of each string written to the string table. */
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+        /** The index of each subtree that has been written. */
+        private final Map<Ilk.Key, Integer> subtrees = new HashMap<Ilk.Key, Integer>();
+
+        /**
+         * Create an encoder that writes to the given data output.
+         *
+         * @param out
+         *            The data output.
+         */
+        public Encoder(DataOutput out) {
+            this.out = out;
+        }
+
+        /**
+         * Write an unsigned variable length integer.
+         *
+         * @param value
+         *            The integer.
+         * @throws IOException
+         *             If an I/O error occurs.
+         */
+        private void writeInteger(int value) throws IOException {
+            TypeCodec.writeInteger(out, value);
+        }
+
+        /**
+         * Write a string, or its index in the string table if it has already
+         * been written.
+         *
+         * @param string
+         *            The string.
+         * @throws IOException
+         *             If an I/O error occurs.
+         */
+        private void writeString(String string) throws IOException {
+            Integer index = strings.get(string);
+            if (index == null) {
+                strings.put(string, strings.size());
+                writeInteger(0);
+                out.writeUTF(string);
+            } else {
+                writeInteger(index + 1);
+            }
+        }
+
+        /**
+         * Write an array of types preceded by its length.
+         *
+         * @param types
+         *            The types.
+         * @throws IOException
+         *             If an I/O error occurs.
+         */
+        private void writeTypes(Type[] types) throws IOException {
+            writeInteger(types.length);
+            for (Type type : types) {
+                write(type);
+            }
+        }
+
+        /**
+         * Write the names of the given parameter classes preceded by their
+         * number.
+         *
+         * @param parameters
+         *            The parameter classes.
+         * @throws IOException
+         *             If an I/O error occurs.
+         */
+        private void writeParameters(Class<?>[] parameters) throws IOException {
+            writeInteger(parameters.length);
+            for (Class<?> parameter : parameters) {
+                writeString(parameter.getName());
+            }
+        }
+
+        /**
+         * Write the position of the given type variable in the type
+         * parameters of the given declaration.
+         *
+         * @param declaration
+         *            The generic declaration.
+         * @param tv
+         *            The type variable.
+         * @throws IOException
+         *             If an I/O error occurs.
+         */
+        private void writePosition(GenericDeclaration declaration, TypeVariable<?> tv) throws IOException {
+            TypeVariable<?>[] parameters = declaration.getTypeParameters();
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i].getName().equals(tv.getName())) {
+                    writeInteger(i);
+                    return;
+                }
+            }
+            throw new IllegalArgumentException();
+        }
+
+        /**
+         * Write the given type.
+         *
+         * @param type
+         *            The type.
+         * @throws IOException
+         *             If an I/O error occurs.
+         * @exception IllegalArgumentException
+         *                If the type is a type variable that is not declared
+         *                by a class, method or constructor.
+         */
+        public void write(Type type) throws IOException {
+            if (type == null) {
+                writeInteger(NULL);
+            } else if (type instanceof Class<?>) {
+                writeInteger(CLASS);
+                writeString(((Class<?>) type).getName());
+            } else if (type instanceof TypeVariable<?>) {
+                TypeVariable<?> tv = (TypeVariable<?>) type;
+                GenericDeclaration declaration = tv.getGenericDeclaration();
+                if (declaration instanceof Class<?>) {
+                    writeInteger(CLASS_VARIABLE);
+                    writeString(((Class<?>) declaration).getName());
+                } else if (declaration instanceof Method) {
+                    Method method = (Method) declaration;
+                    writeInteger(METHOD_VARIABLE);
+                    writeString(method.getDeclaringClass().getName());
+                    writeString(method.getName());
+                    writeParameters(method.getParameterTypes());
+                } else if (declaration instanceof Constructor<?>) {
+                    Constructor<?> constructor = (Constructor<?>) declaration;
+                    writeInteger(CONSTRUCTOR_VARIABLE);
+                    writeString(constructor.getDeclaringClass().getName());
+                    writeParameters(constructor.getParameterTypes());
+                } else {
+                    throw new IllegalArgumentException();
+                }
+                writePosition(declaration, tv);
+            } else {
+                Ilk.Key key = new Ilk.Key(type);
+                Integer index = subtrees.get(key);
+                if (index != null) {
+                    writeInteger(REFERENCE);
+                    writeInteger(index);
+                    return;
+                }
+                if (type instanceof ParameterizedType) {
+                    ParameterizedType pt = (ParameterizedType) type;
+                    writeInteger(PARAMETERIZED);
+                    writeString(((Class<?>) pt.getRawType()).getName());
+                    write(pt.getOwnerType());
+                    writeTypes(Types.getArguments(pt));
+                } else if (type instanceof WildcardType) {
+                    WildcardType wt = (WildcardType) type;
+                    writeInteger(WILDCARD);
+                    writeTypes(Types.getLowerBounds(wt));
+                    writeTypes(Types.getUpperBounds(wt));
+                } else if (type instanceof GenericArrayType) {
+                    writeInteger(ARRAY);
+                    write(((GenericArrayType) type).getGenericComponentType());
+                } else {
+                    throw new IllegalArgumentException();
+                }
+                subtrees.put(key, subtrees.size());
+            }
+        }
+    }
+
+    /**
+     * Decodes types from a data input.
+     * <p>
+     * The decoder does not trust its input. String table indexes, back
+     * references and type variable positions are checked against what has
+     * been decoded so far, and arrays are grown as their elements are read
+     * rather than allocated from the encoded length, so that a corrupt length
+     * ends with an <code>EOFException</code> when the input runs out instead
+     * of a large allocation. Types nested deeper than
+     * {@link TypeCodec#MAXIMUM_DEPTH} are rejected, so that a corrupt input
+     * cannot exhaust the stack.
+     *
+     * @author Alan Gutierrez
+     */
+    public final static class Decoder {
+        /** The data input. */
+        private final DataInput in;
+
+        /** The class loader used to load classes by name. */
+        private final ClassLoader classLoader;
+
+        /** The string table. */
+        private final List<String> strings = new ArrayList<String>();
+
+        /** The subtrees read in the order in which they were read. */
+        private final List<Type> subtrees = new ArrayList<Type>();
+
+        /**
+         * Create a decoder that reads from the given data input and loads
+         * classes using the given class loader.
+         *
+         * @param in
+         *            The data input.
+         * @param classLoader
+         *            The class loader.
+         */
+        public Decoder(DataInput in, ClassLoader classLoader) {
+            this.in = in;
+            this.classLoader = classLoader;
+        }
+
+        /**
+         * Read an unsigned variable length integer.
+         *
+         * @return The integer.
+         * @throws IOException
+         *             If an I/O error occurs.
+         */
+        private int readInteger() throws IOException {
+            return TypeCodec.readInteger(in);
+        }
+
+        /**
+         * Read a string or a reference to a string in the string table.
+         *
+         * @return The string.
+         * @throws IOException
+         *             If an I/O error occurs.
+         * @throws StreamCorruptedException
+         *             If the reference is not in the string table.
+         */
+        private String readString() throws IOException {
+            int index = readInteger();
+            if (index == 0) {
+                String string = in.readUTF();
+                strings.add(string);
+                return string;
+            }
+            if (index > strings.size()) {
+                throw new StreamCorruptedException("Invalid string reference " + index + ".");
+            }
+            return strings.get(index - 1);
+        }
+
+        /**
+         * Read a class name and load the class.
+         *
+         * @return The class.
+         * @throws IOException
+         *             If an I/O error occurs or the class cannot be found.
+         */
+        private Class<?> readClass() throws IOException {
+            String name = readString();
+            Class<?> primitive = PRIMITIVES.get(name);
+            if (primitive != null) {
+                return primitive;
+            }
+            try {
+                return Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                throw (IOException) new InvalidObjectException(name).initCause(e);
+            }
+        }
+
+        /**
+         * Read an array of types preceded by its length.
+         *
+         * @param depth
+         *            The nesting depth of the types.
+         * @return The types.
+         * @throws IOException
+         *             If an I/O error occurs.
+         */
+        private Type[] readTypes(int depth) throws IOException {
+            int length = readInteger();
+            List<Type> types = new ArrayList<Type>(Math.min(length, 16));
+            for (int i = 0; i < length; i++) {
+                types.add(read(depth));
+            }
+            return types.toArray(new Type[types.size()]);
+        }
+
+        /**
+         * Read parameter classes preceded by their number.
+         *
+         * @return The parameter classes.
+         * @throws IOException
+         *             If an I/O error occurs.
+         */
+        private Class<?>[] readParameters() throws IOException {
+            int length = readInteger();
+            List<Class<?>> parameters = new ArrayList<Class<?>>(Math.min(length, 16));
+            for (int i = 0; i < length; i++) {
+                parameters.add(readClass());
+            }
+            return parameters.toArray(new Class<?>[parameters.size()]);
+        }
+
+        /**
+         * Read the position of a type variable and get the type variable from
+         * the given declaration.
+         *
+         * @param declaration
+         *            The generic declaration.
+         * @return The type variable.
+         * @throws IOException
+         *             If an I/O error occurs.
+         * @throws InvalidObjectException
+         *             If the declaration has no type parameter at the
+         *             position.
+         */
+        private TypeVariable<?> readPosition(GenericDeclaration declaration) throws IOException {
+            int position = readInteger();
+            TypeVariable<?>[] parameters = declaration.getTypeParameters();
+            if (position >= parameters.length) {
+                throw new InvalidObjectException("No type parameter at " + position + " of " + declaration + ".");
+            }
+            return parameters[position];
+        }
+
+        /**
+         * Read a type.
+         *
+         * @return The type.
+         * @throws IOException
+         *             If an I/O error occurs, a class cannot be found or the
+         *             encoding is invalid.
+         */
+        public Type read() throws IOException {
+            return read(0);
+        }
+
+        /**
+         * Read a type nested at the given depth.
+         *
+         * @param depth
+         *            The nesting depth of the type.
+         * @return The type.
+         * @throws IOException
+         *             If an I/O error occurs, a class cannot be found or the
+         *             encoding is invalid.
+         * @throws StreamCorruptedException
+         *             If the type is nested deeper than the maximum depth.
+         */
+        private Type read(int depth) throws IOException {
+            if (depth > MAXIMUM_DEPTH) {
+                throw new StreamCorruptedException("Types nested deeper than " + MAXIMUM_DEPTH + ".");
+            }
+            Type type;
+            switch (readInteger()) {
+            case NULL:
+                return null;
+            case CLASS:
+                return readClass();
+            case CLASS_VARIABLE:
+                return readPosition(readClass());
+            case METHOD_VARIABLE:
+                Class<?> methodClass = readClass();
+                String name = readString();
+                try {
+                    return readPosition(methodClass.getDeclaredMethod(name, readParameters()));
+                } catch (NoSuchMethodException e) {
+                    throw (IOException) new InvalidObjectException(name).initCause(e);
+                }
+            case CONSTRUCTOR_VARIABLE:
+                Class<?> constructorClass = readClass();
+                try {
+                    return readPosition(constructorClass.getDeclaredConstructor(readParameters()));
+                } catch (NoSuchMethodException e) {
+                    throw (IOException) new InvalidObjectException(constructorClass.getName()).initCause(e);
+                }
+            case REFERENCE:
+                int index = readInteger();
+                if (index >= subtrees.size()) {
+                    throw new StreamCorruptedException("Invalid subtree reference " + index + ".");
+                }
+                return subtrees.get(index);
+            case PARAMETERIZED:
+                Class<?> rawClass = readClass();
+                Type ownerType = read(depth + 1);
+                Type[] arguments = readTypes(depth + 1);
+                if (arguments.length != rawClass.getTypeParameters().length) {
+                    throw new InvalidObjectException("Wrong number of type arguments for " + rawClass.getName() + ".");
+                }
+                type = new Types.Parameterized(rawClass, ownerType, arguments);
+                break;
+            case WILDCARD:
+                Type[] lower = readTypes(depth + 1);
+                type = new Types.Wildcard(lower, readTypes(depth + 1));
+                break;
+            case ARRAY:
+                type = new Types.GenericArray(read(depth + 1));
+                break;
+            default:
+                throw new InvalidObjectException("Invalid type encoding.");
+            }
+            subtrees.add(type);
+            return type;
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.goodworkalan.ilk;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses type names into keys. Both the Java source form of a type, as
+ * created by the <code>toString</code> method of <code>Ilk.Key</code>, and the
+ * generic signature form of the Java virtual machine are accepted.
+ * <p>
+ * In the Java source form, nested classes can be named with either a dot or a
+ * dollar sign separator, so <code>java.util.Map.Entry</code> and
+ * <code>java.util.Map$Entry</code> are equivalent. Type variables cannot be
+ * parsed since there is no declaration to resolve them against.
+ * <p>
+ * Parsed keys are interned and kept in a bounded cache of the most recently
+ * parsed strings, so that parsing a frequently used string is a lookup.
+ *
+ * @author Alan Gutierrez
+ */
+public class TypeParser {
+    /** The default maximum number of cached keys. */
+    public static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /** The primitive classes by name in the Java source form. */
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<String, Class<?>>();
+
+    /** The primitive classes by their descriptor character. */
+    private static final Map<Character, Class<?>> DESCRIPTORS = new HashMap<Character, Class<?>>();
+
+    static {
+        Class<?>[] primitives = new Class<?>[] {
+            boolean.class, byte.class, char.class, short.class, int.class,
+            long.class, float.class, double.class, void.class
+        };
+        String descriptors = "ZBCSIJFDV";
+        for (int i = 0; i < primitives.length; i++) {
+            PRIMITIVES.put(primitives[i].getName(), primitives[i]);
+            DESCRIPTORS.put(descriptors.charAt(i), primitives[i]);
+        }
+    }
+
+    /** The class loader used to load classes by name. */
+    private final ClassLoader classLoader;
+
+    /** The cache of the most recently parsed keys. */
+    private final Map<String, Ilk.Key> cache;
+
+    /**
+     * Create a type parser that loads classes with the context class loader of
+     * the current thread, or the class loader of <code>Ilk</code> if there is
+     * none, and that caches the default number of keys.
+     */
+    public TypeParser() {
+        this(getDefaultClassLoader(), DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Create a type parser that loads classes with the given class loader and
+     * caches at most the given number of keys.
+     *
+     * @param classLoader
+     *            The class loader.
+     * @param cacheSize
+     *            The maximum number of cached keys.
+     */
+    public TypeParser(ClassLoader classLoader, final int cacheSize) {
+        this.classLoader = classLoader;
+        this.cache = new LinkedHashMap<String, Ilk.Key>(16, 0.75f, true) {
+            /** The serial version id. */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Ilk.Key> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    /**
+     * Get the context class loader of the current thread, or the class loader
+     * of <code>Ilk</code> if there is none.
+     *
+     * @return The default class loader.
+     */
+    private static ClassLoader getDefaultClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader == null ? Ilk.class.getClassLoader() : classLoader;
+    }
+
+    /**
+     * Parse the given type name in either the Java source form or the generic
+     * signature form into a canonical key.
+     *
+     * @param name
+     *            The type name.
+     * @return The canonical key.
+     * @exception IllegalArgumentException
+     *                If the name cannot be parsed or names a class that
+     *                cannot be found.
+     */
+    public Ilk.Key parse(String name) {
+        Ilk.Key key;
+        synchronized (cache) {
+            key = cache.get(name);
+        }
+        if (key == null) {
+            Parser parser = new Parser(name);
+            Type type = isSignature(name) ? parser.signature() : parser.source();
+            parser.end();
+            key = new Ilk.Key(type).intern();
+            synchronized (cache) {
+                cache.put(name, key);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Parse the given type name in either the Java source form or the generic
+     * signature form into a super type token.
+     *
+     * @param name
+     *            The type name.
+     * @return The super type token.
+     * @exception IllegalArgumentException
+     *                If the name cannot be parsed or names a class that
+     *                cannot be found.
+     */
+    public Ilk<?> parseIlk(String name) {
+        return new Ilk<Object>(parse(name));
+    }
+
+    /**
+     * Determine whether the given name is in the generic signature form.
+     *
+     * @param name
+     *            The type name.
+     * @return True if the name is a generic signature.
+     */
+    private static boolean isSignature(String name) {
+        if (name.length() == 1) {
+            return DESCRIPTORS.containsKey(name.charAt(0));
+        }
+        return name.startsWith("[") || (name.startsWith("L") && name.endsWith(";"));
+    }
+
+    /**
+     * Load the class with the given name. If the class cannot be found, the
+     * name is tried again with its trailing dot separators replaced with
+     * dollar signs, one at a time, so that nested classes can be named in the
+     * Java source form.
+     *
+     * @param name
+     *            The class name.
+     * @return The class.
+     * @exception IllegalArgumentException
+     *                If the class cannot be found.
+     */
+    private Class<?> load(String name) {
+        Class<?> primitive = PRIMITIVES.get(name);
+        if (primitive != null) {
+            return primitive;
+        }
+        String binaryName = name;
+        for (;;) {
+            try {
+                return Class.forName(binaryName, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                int dot = binaryName.lastIndexOf('.');
+                if (dot == -1) {
+                    throw new IllegalArgumentException("Class not found: " + name, e);
+                }
+                binaryName = binaryName.substring(0, dot) + '$' + binaryName.substring(dot + 1);
+            }
+        }
+    }
+
+    /**
+     * Create a parameterized type, using the declaring class of the raw class
+     * as the owner type if no owner type is given, as the JDK does.
+     *
+     * @param rawClass
+     *            The raw class.
+     * @param ownerType
+     *            The owner type or null.
+     * @param arguments
+     *            The actual type arguments.
+     * @return A parameterized type.
+     * @exception IllegalArgumentException
+     *                If the number of arguments does not match the number of
+     *                type parameters.
+     */
+    private static Type parameterize(Class<?> rawClass, Type ownerType, List<Type> arguments) {
+        if (rawClass.getTypeParameters().length != arguments.size()) {
+            throw new IllegalArgumentException("Wrong number of type arguments for " + rawClass.getName());
+        }
+        if (ownerType == null) {
+            ownerType = rawClass.getDeclaringClass();
+        }
+        return new Types.Parameterized(rawClass, ownerType, arguments.toArray(new Type[arguments.size()]));
+    }
+
+    /**
+     * Create an array type of the given component type.
+     *
+     * @param componentType
+     *            The component type.
+     * @return An array class if the component type is a class, otherwise a
+     *         generic array type.
+     */
+    private static Type arrayOf(Type componentType) {
+        if (componentType instanceof Class<?>) {
+            return Array.newInstance((Class<?>) componentType, 0).getClass();
+        }
+        return new Types.GenericArray(componentType);
+    }
+
+    /**
+     * A recursive descent parser of a single type name.
+     *
+     * @author Alan Gutierrez
+     */
+    private final class Parser {
+        /** The type name. */
+        private final String name;
+
+        /** The current position in the type name. */
+        private int index;
+
+        /**
+         * Create a parser for the given type name.
+         *
+         * @param name
+         *            The type name.
+         */
+        public Parser(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Create an exception that reports an error at the current position.
+         *
+         * @return An illegal argument exception.
+         */
+        private IllegalArgumentException error() {
+            return new IllegalArgumentException("Cannot parse type at " + index + ": " + name);
+        }
+
+        /** Skip any white space. */
+        private void skip() {
+            while (index < name.length() && Character.isWhitespace(name.charAt(index))) {
+                index++;
+            }
+        }
+
+        /**
+         * Consume the given character if it is the next character after any
+         * white space.
+         *
+         * @param ch
+         *            The character.
+         * @return True if the character was consumed.
+         */
+        private boolean accept(char ch) {
+            skip();
+            if (index < name.length() && name.charAt(index) == ch) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Consume the given character or raise an error.
+         *
+         * @param ch
+         *            The character.
+         */
+        private void expect(char ch) {
+            if (!accept(ch)) {
+                throw error();
+            }
+        }
+
+        /** Raise an error if there are characters after the type. */
+        public void end() {
+            skip();
+            if (index != name.length()) {
+                throw error();
+            }
+        }
+
+        /**
+         * Consume and return a Java identifier.
+         *
+         * @return The identifier.
+         */
+        private String identifier() {
+            skip();
+            int start = index;
+            while (index < name.length() && Character.isJavaIdentifierPart(name.charAt(index))) {
+                index++;
+            }
+            if (start == index) {
+                throw error();
+            }
+            return name.substring(start, index);
+        }
+
+        /**
+         * Consume a keyword if it is the next word.
+         *
+         * @param keyword
+         *            The keyword.
+         * @return True if the keyword was consumed.
+         */
+        private boolean keyword(String keyword) {
+            skip();
+            int end = index + keyword.length();
+            if (name.startsWith(keyword, index) && (end == name.length() || !Character.isJavaIdentifierPart(name.charAt(end)))) {
+                index = end;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Parse a type in the Java source form.
+         *
+         * @return The type.
+         */
+        public Type source() {
+            StringBuilder className = new StringBuilder(identifier());
+            while (accept('.') || accept('$')) {
+                className.append(name.charAt(index - 1)).append(identifier());
+            }
+            Class<?> rawClass = load(className.toString());
+            Type type = rawClass;
+            if (accept('<')) {
+                type = parameterize(rawClass, null, sourceArguments());
+            }
+            while (type instanceof Types.Parameterized && (accept('.') || accept('$'))) {
+                rawClass = load(rawClass.getName() + '$' + identifier());
+                List<Type> arguments = accept('<') ? sourceArguments() : new ArrayList<Type>();
+                type = parameterize(rawClass, type, arguments);
+            }
+            while (accept('[')) {
+                expect(']');
+                type = arrayOf(type);
+            }
+            return type;
+        }
+
+        /**
+         * Parse the type arguments of a parameterized type in the Java source
+         * form after the opening angle bracket.
+         *
+         * @return The type arguments.
+         */
+        private List<Type> sourceArguments() {
+            List<Type> arguments = new ArrayList<Type>();
+            do {
+                if (accept('?')) {
+                    if (keyword("extends")) {
+                        List<Type> upper = new ArrayList<Type>();
+                        do {
+                            upper.add(source());
+                        } while (accept('&'));
+                        arguments.add(new Types.Wildcard(new Type[0], upper.toArray(new Type[upper.size()])));
+                    } else if (keyword("super")) {
+                        arguments.add(new Types.Wildcard(new Type[] { source() }, new Type[] { Object.class }));
+                    } else {
+                        arguments.add(new Types.Wildcard(new Type[0], new Type[] { Object.class }));
+                    }
+                } else {
+                    arguments.add(source());
+                }
+            } while (accept(','));
+            expect('>');
+            return arguments;
+        }
+
+        /**
+         * Parse a type in the generic signature form.
+         *
+         * @return The type.
+         */
+        public Type signature() {
+            if (index == name.length()) {
+                throw error();
+            }
+            char ch = name.charAt(index++);
+            switch (ch) {
+            case '[':
+                return arrayOf(signature());
+            case 'L':
+                return classSignature();
+            case 'T':
+                throw error();
+            default:
+                Class<?> primitive = DESCRIPTORS.get(ch);
+                if (primitive == null) {
+                    throw error();
+                }
+                return primitive;
+            }
+        }
+
+        /**
+         * Parse a class type signature after the initial <code>L</code>.
+         *
+         * @return The type.
+         */
+        private Type classSignature() {
+            int start = index;
+            while (index < name.length() && "<;.".indexOf(name.charAt(index)) == -1) {
+                index++;
+            }
+            Class<?> rawClass = load(name.substring(start, index).replace('/', '.'));
+            Type type = rawClass;
+            if (accept('<')) {
+                type = parameterize(rawClass, null, signatureArguments());
+            }
+            while (accept('.')) {
+                start = index;
+                while (index < name.length() && "<;.".indexOf(name.charAt(index)) == -1) {
+                    index++;
+                }
+                rawClass = load(rawClass.getName() + '$' + name.substring(start, index));
+                List<Type> arguments = accept('<') ? signatureArguments() : new ArrayList<Type>();
+                type = type instanceof Class<?> && arguments.isEmpty() ? rawClass : parameterize(rawClass, type instanceof Class<?> ? null : type, arguments);
+            }
+            expect(';');
+            return type;
+        }
+
+        /**
+         * Parse the type arguments of a class type signature after the opening
+         * angle bracket.
+         *
+         * @return The type arguments.
+         */
+        private List<Type> signatureArguments() {
+            List<Type> arguments = new ArrayList<Type>();
+            while (!accept('>')) {
+                if (accept('*')) {
+                    arguments.add(new Types.Wildcard(new Type[0], new Type[] { Object.class }));
+                } else if (accept('+')) {
+                    arguments.add(new Types.Wildcard(new Type[0], new Type[] { signature() }));
+                } else if (accept('-')) {
+                    arguments.add(new Types.Wildcard(new Type[] { signature() }, new Type[] { Object.class }));
+                } else {
+                    arguments.add(signature());
+                }
+            }
+            return arguments;
+        }
+    }
+}
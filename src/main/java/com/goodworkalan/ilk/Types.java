@@ -1,5 +1,6 @@
 package com.goodworkalan.ilk;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
@@ -7,8 +8,9 @@ import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,6 +23,16 @@ import java.util.Map;
  * @author Alan Gutierrez
  */
 public class Types {
+    /**
+     * The greatest depth of a type tree that is compared and hashed by
+     * recursion. Deeper trees are visited with an explicit stack, which
+     * allocates its frames, so that they do not consume the call stack.
+     */
+    static final int MAXIMUM_RECURSIVE_DEPTH = 32;
+
+    /** An empty array of types. */
+    private static final Type[] NO_TYPES = new Type[0];
+
     /**
      * Return the class of the super type token type.
      * 
@@ -40,6 +52,10 @@ public class Types {
 
     /**
      * Get an array of the methods in the type that have the given name.
+     * <p>
+     * The methods are indexed by name once for each class, so the lookup does
+     * not visit every method of the class. The array returned is a copy that
+     * the caller is free to modify.
      * 
      * @param type
      *            Type class.
@@ -48,13 +64,48 @@ public class Types {
      * @return An array of methods in the type that have the given name.
      */
     public static Method[] getMethods(Class<?> type, String name) {
-        ArrayList<Method> methods = new ArrayList<Method>();
-        for (Method method : type.getMethods()) {
-            if (method.getName().equals(name)) {
-                methods.add(method);
-            }
-        }
-        return methods.toArray(new Method[methods.size()]);
+        return MethodIndex.get(type).getMethods(name).clone();
+    }
+
+    /**
+     * Get an array of the methods in the type that have the given name and
+     * the given number of parameters.
+     * <p>
+     * The methods are indexed by name and number of parameters once for each
+     * class, so the lookup does not visit every method of the class. The array
+     * returned is a copy that the caller is free to modify.
+     * 
+     * @param type
+     *            Type class.
+     * @param name
+     *            The method name.
+     * @param arity
+     *            The number of parameters.
+     * @return An array of methods in the type that have the given name and
+     *         number of parameters.
+     */
+    public static Method[] getMethods(Class<?> type, String name, int arity) {
+        return MethodIndex.get(type).getMethods(name, arity).clone();
+    }
+
+    /**
+     * Get the type parameters of the method in the type that has the given
+     * name, for use with {@link Ilk#assign(TypeVariable, Type) Ilk.assign}.
+     * <p>
+     * The type parameters are read once for each class. The array returned is
+     * a copy that the caller is free to modify.
+     * 
+     * @param type
+     *            Type class.
+     * @param name
+     *            The method name.
+     * @return The type parameters of the method.
+     * @exception IllegalArgumentException
+     *                If the type has no public method with the given name or
+     *                more than one.
+     */
+    public static TypeVariable<?>[] getTypeParameters(Class<?> type, String name) {
+        return MethodIndex.get(type).getTypeParameters(name).clone();
     }
 
     /**
@@ -88,8 +139,24 @@ public class Types {
         /** The super most interfaces implemented by this wildcard type. */
         private final Type[] upperBounds;
 
+        /** The structural hash code calculated at construction. */
+        private final int hash;
+
+        /** The depth of the type tree rooted at this wildcard. */
+        private final int depth;
+
+        /** The number of nodes in the type tree rooted at this wildcard. */
+        private final int nodeCount;
+
+        /** The cached string representation, created on first use. */
+        private String string;
+
         /**
          * Create a wild card type with the given upper and lower bounds.
+         * <p>
+         * The given arrays are not copied and must not be modified after the
+         * wildcard is constructed, since the hash code, depth and node count
+         * of the type tree are calculated here at construction.
          * 
          * @param lowerBounds
          *            The sub most interface implemented by this wildcard type.
@@ -100,6 +167,9 @@ public class Types {
         public Wildcard(Type[] lowerBounds, Type[] upperBounds) {
             this.lowerBounds = lowerBounds;
             this.upperBounds = upperBounds;
+            this.hash = Types.hashCode(lowerBounds) ^ Types.hashCode(upperBounds);
+            this.depth = 1 + Math.max(Types.getDepth(lowerBounds), Types.getDepth(upperBounds));
+            this.nodeCount = 1 + Types.getNodeCount(lowerBounds) + Types.getNodeCount(upperBounds);
         }
 
         /**
@@ -121,25 +191,89 @@ public class Types {
             return upperBounds.clone();
         }  
 
+        /**
+         * Get the number of lower bounds without copying the bounds.
+         * 
+         * @return The number of lower bounds.
+         */
+        int lowerBoundCount() {
+            return lowerBounds.length;
+        }
+
+        /**
+         * Get the lower bound at the given index without copying the bounds.
+         * 
+         * @param index
+         *            The index.
+         * @return The lower bound.
+         */
+        Type lowerBound(int index) {
+            return lowerBounds[index];
+        }
+
+        /**
+         * Get the number of upper bounds without copying the bounds.
+         * 
+         * @return The number of upper bounds.
+         */
+        int upperBoundCount() {
+            return upperBounds.length;
+        }
+
+        /**
+         * Get the upper bound at the given index without copying the bounds.
+         * 
+         * @param index
+         *            The index.
+         * @return The upper bound.
+         */
+        Type upperBound(int index) {
+            return upperBounds[index];
+        }
+
+        /**
+         * Get the depth of the type tree rooted at this wildcard, where a
+         * wildcard bounded by classes has a depth of two.
+         * 
+         * @return The depth of the type tree.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Get the number of type nodes in the type tree rooted at this
+         * wildcard, including this wildcard.
+         * 
+         * @return The number of type nodes.
+         */
+        public int getNodeCount() {
+            return nodeCount;
+        }
+
         /**
          * Create a string representation of the <code>WildcardType</code> as it
-         * would appear in Java source code.
+         * would appear in Java source code. The string is created once and
+         * cached.
          * 
          * @return A string representation of this <code>WildcardType</code>.
          */
         public String toString() {
-            StringBuffer string = new StringBuffer();
-            if (lowerBounds.length != 0) { 
-                string.append("? super ").append(typeToString(lowerBounds[0]));
-            } else {
-                string.append("? extends ");
-                String separator = "";
-                for (Type upper : upperBounds) {
-                    string.append(separator).append(typeToString(upper));
-                    separator = " & ";
+            if (string == null) {
+                StringBuilder newString = new StringBuilder();
+                if (lowerBounds.length != 0) { 
+                    newString.append("? super ").append(typeToString(lowerBounds[0]));
+                } else {
+                    newString.append("? extends ");
+                    String separator = "";
+                    for (Type upper : upperBounds) {
+                        newString.append(separator).append(typeToString(upper));
+                        separator = " & ";
+                    }
                 }
+                string = newString.toString();
             }
-            return string.toString();
+            return string;
         }
     }
 
@@ -165,10 +299,26 @@ public class Types {
         /** The actual type arguments. */
         private final Type [] actualTypeArguments;
 
+        /** The structural hash code calculated at construction. */
+        private final int hash;
+
+        /** The depth of the type tree rooted at this parameterized type. */
+        private final int depth;
+
+        /** The number of nodes in the type tree rooted at this type. */
+        private final int nodeCount;
+
+        /** The cached string representation, created on first use. */
+        private String string;
+
         /**
          * Create a parameterized type from the given parameterized type with
          * the given type arguments in lieu of the type arguments in the given
          * parameterized type.
+         * <p>
+         * The given array is not copied and must not be modified after the
+         * parameterized type is constructed, since the hash code, depth and
+         * node count of the type tree are calculated here at construction.
          * 
          * @param rawType
          *            The raw type.
@@ -181,6 +331,9 @@ public class Types {
             this.ownerType = ownerType;
             this.rawType = rawType;
             this.actualTypeArguments = actualTypeArguments;
+            this.hash = rawType.hashCode() ^ Types.hashCode(ownerType) ^ Types.hashCode(actualTypeArguments);
+            this.depth = 1 + Types.getDepth(actualTypeArguments);
+            this.nodeCount = 1 + Types.getNodeCount(actualTypeArguments);
         }
 
         /**
@@ -193,6 +346,28 @@ public class Types {
             return actualTypeArguments.clone();
         }
 
+        /**
+         * Get the number of actual type arguments without copying the actual
+         * type arguments.
+         * 
+         * @return The number of actual type arguments.
+         */
+        int argumentCount() {
+            return actualTypeArguments.length;
+        }
+
+        /**
+         * Get the actual type argument at the given index without copying the
+         * actual type arguments.
+         * 
+         * @param index
+         *            The index.
+         * @return The actual type argument.
+         */
+        Type argument(int index) {
+            return actualTypeArguments[index];
+        }
+
         /**
          * Get a <code>Type</code> object representing the type that this type
          * is a member of.
@@ -212,25 +387,281 @@ public class Types {
         public Type getRawType() {
             return rawType;
         }
+
+        /**
+         * Get the depth of the type tree rooted at this parameterized type,
+         * where a type parameterized only by classes has a depth of two.
+         * 
+         * @return The depth of the type tree.
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * Get the number of type nodes in the type tree rooted at this
+         * parameterized type, including this parameterized type.
+         * 
+         * @return The number of type nodes.
+         */
+        public int getNodeCount() {
+            return nodeCount;
+        }
         
+        /**
+         * Create a string representation that resembles the type declaration.
+         * The string is created once and cached.
+         * 
+         * @return The string representation.
+         */
+        public String toString() {
+            if (string == null) {
+                StringBuilder newString = new StringBuilder();
+                newString.append(((Class<?>) rawType).getName()).append("<");
+                String separator = "";
+                for (Type type : actualTypeArguments) {
+                    newString.append(separator).append(typeToString(type));
+                    separator = ", ";
+                }
+                newString.append(">");
+                string = newString.toString();
+            }
+            return string;
+        }
+    }
+
+    /**
+     * Implementation of {@link java.lang.reflect.GenericArrayType} to allow for
+     * the creation of generic array types when decoding types.
+     * 
+     * @author Alan Gutierrez
+     */
+    public static class GenericArray implements GenericArrayType {
+        /** The component type. */
+        private final Type genericComponentType;
+
+        /**
+         * Create a generic array type with the given component type.
+         * 
+         * @param genericComponentType
+         *            The component type.
+         */
+        public GenericArray(Type genericComponentType) {
+            this.genericComponentType = genericComponentType;
+        }
+
+        /**
+         * Get the component type of this array type.
+         * 
+         * @return The component type.
+         */
+        public Type getGenericComponentType() {
+            return genericComponentType;
+        }
+
         /**
          * Create a string representation that resembles the type declaration.
          * 
          * @return The string representation.
          */
         public String toString() {
-            StringBuilder string = new StringBuilder();
-            string.append(((Class<?>) rawType).getName()).append("<");
-            String separator = "";
-            for (Type type : actualTypeArguments) {
-                string.append(separator).append(typeToString(type));
-                separator = ", ";
+            return typeToString(genericComponentType) + "[]";
+        }
+    }
+
+    /**
+     * Get the depth of the given type tree. Classes and type variables have a
+     * depth of one. The depth of the nodes implemented by <code>Types</code>
+     * is calculated when they are constructed. Other type trees are visited
+     * with an explicit stack, so that the depth of a deep tree can be
+     * determined before choosing between recursion and an explicit stack to
+     * compare or hash it.
+     * 
+     * @param type
+     *            The type.
+     * @return The depth of the type tree.
+     */
+    static int getDepth(Type type) {
+        switch (typeAsCode(type)) {
+        case 1:
+            break;
+        case 2:
+            if (type instanceof Parameterized) {
+                return ((Parameterized) type).depth;
+            }
+            break;
+        case 3:
+            if (type instanceof Wildcard) {
+                return ((Wildcard) type).depth;
+            }
+            break;
+        default:
+            return 1;
+        }
+        int depth = 0;
+        List<Type> stack = new ArrayList<Type>();
+        List<Integer> levels = new ArrayList<Integer>();
+        stack.add(type);
+        levels.add(1);
+        while (!stack.isEmpty()) {
+            Type top = stack.remove(stack.size() - 1);
+            int level = levels.remove(levels.size() - 1);
+            if (top instanceof Parameterized) {
+                depth = Math.max(depth, level - 1 + ((Parameterized) top).depth);
+            } else if (top instanceof Wildcard) {
+                depth = Math.max(depth, level - 1 + ((Wildcard) top).depth);
+            } else {
+                depth = Math.max(depth, level);
+                for (Type member : getMembers(top)) {
+                    stack.add(member);
+                    levels.add(level + 1);
+                }
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Get the greatest depth of the given type trees.
+     * 
+     * @param types
+     *            The types.
+     * @return The greatest depth or zero if the array is empty.
+     */
+    private static int getDepth(Type[] types) {
+        int depth = 0;
+        for (Type type : types) {
+            depth = Math.max(depth, getDepth(type));
+        }
+        return depth;
+    }
+
+    /**
+     * Get the number of type nodes in the given type tree. The count for the
+     * nodes implemented by <code>Types</code> is calculated when they are
+     * constructed. Other type trees are visited with an explicit stack.
+     * 
+     * @param type
+     *            The type.
+     * @return The number of type nodes.
+     */
+    static int getNodeCount(Type type) {
+        int nodeCount = 0;
+        List<Type> stack = null;
+        for (;;) {
+            if (type instanceof Parameterized) {
+                nodeCount += ((Parameterized) type).nodeCount;
+            } else if (type instanceof Wildcard) {
+                nodeCount += ((Wildcard) type).nodeCount;
+            } else {
+                nodeCount++;
+                Type[] members = getMembers(type);
+                if (members.length != 0) {
+                    if (stack == null) {
+                        stack = new ArrayList<Type>();
+                    }
+                    stack.addAll(Arrays.asList(members));
+                }
             }
-            string.append(">");
-            return string.toString();
+            if (stack == null || stack.isEmpty()) {
+                return nodeCount;
+            }
+            type = stack.remove(stack.size() - 1);
         }
     }
 
+    /**
+     * Get the total number of type nodes in the given type trees.
+     * 
+     * @param types
+     *            The types.
+     * @return The total number of type nodes.
+     */
+    private static int getNodeCount(Type[] types) {
+        int nodeCount = 0;
+        for (Type type : types) {
+            nodeCount += getNodeCount(type);
+        }
+        return nodeCount;
+    }
+
+    /**
+     * Get the child nodes counted by {@link #getDepth(Type) getDepth} and
+     * {@link #getNodeCount(Type) getNodeCount}: the component type of a
+     * generic array type, the arguments of a parameterized type and the
+     * bounds of a wildcard type.
+     * 
+     * @param type
+     *            The type.
+     * @return The child nodes, not to be modified.
+     */
+    private static Type[] getMembers(Type type) {
+        switch (typeAsCode(type)) {
+        case 1:
+            return new Type[] { ((GenericArrayType) type).getGenericComponentType() };
+        case 2:
+            return getArguments((ParameterizedType) type);
+        case 3:
+            WildcardType wt = (WildcardType) type;
+            Type[] lower = getLowerBounds(wt);
+            Type[] upper = getUpperBounds(wt);
+            Type[] members = new Type[lower.length + upper.length];
+            System.arraycopy(lower, 0, members, 0, lower.length);
+            System.arraycopy(upper, 0, members, lower.length, upper.length);
+            return members;
+        default:
+            return NO_TYPES;
+        }
+    }
+
+    /**
+     * Get the actual type arguments of the given parameterized type. If the
+     * parameterized type is implemented by <code>Types</code> the array is
+     * shared and not copied, so the array returned must never be modified.
+     * 
+     * @param pt
+     *            The parameterized type.
+     * @return The actual type arguments, not to be modified.
+     */
+    static Type[] getArguments(ParameterizedType pt) {
+        if (pt instanceof Parameterized) {
+            return ((Parameterized) pt).actualTypeArguments;
+        }
+        return pt.getActualTypeArguments();
+    }
+
+    /**
+     * Get the lower bounds of the given wildcard type. If the wildcard type is
+     * implemented by <code>Types</code> the array is shared and not copied, so
+     * the array returned must never be modified.
+     * 
+     * @param wt
+     *            The wildcard type.
+     * @return The lower bounds, not to be modified.
+     */
+    static Type[] getLowerBounds(WildcardType wt) {
+        if (wt instanceof Wildcard) {
+            return ((Wildcard) wt).lowerBounds;
+        }
+        return wt.getLowerBounds();
+    }
+
+    /**
+     * Get the upper bounds of the given wildcard type. If the wildcard type is
+     * implemented by <code>Types</code> the array is shared and not copied, so
+     * the array returned must never be modified.
+     * 
+     * @param wt
+     *            The wildcard type.
+     * @return The upper bounds, not to be modified.
+     */
+    static Type[] getUpperBounds(WildcardType wt) {
+        if (wt instanceof Wildcard) {
+            return ((Wildcard) wt).upperBounds;
+        }
+        return wt.getUpperBounds();
+    }
+
     /**
      * Determine of the type given in from can be assigned to type type
      * given in to.
@@ -244,7 +675,7 @@ public class Types {
     public static boolean isParameterAssignableFrom(Type to, Type from) {
         if (getRawClass(to).isAssignableFrom(getRawClass(from))) {
             if (to instanceof ParameterizedType) {
-                return equals(((ParameterizedType) to).getActualTypeArguments(), ((ParameterizedType) from).getActualTypeArguments());
+                return equals(getArguments((ParameterizedType) to), getArguments((ParameterizedType) from));
             }
             return true;
         }
@@ -263,6 +694,11 @@ public class Types {
      * example. If two types implement the same generic super class or
      * interface, the subsequent assignments for the implemented type will
      * overwrite in the initial assignments.
+     * <p>
+     * The hierarchy of the raw class is only navigated once. The assignments
+     * made by the super classes and interfaces are kept in a template per raw
+     * class in terms of the type parameters of the raw class, and the actual
+     * type arguments of the given type are substituted into the template.
      * 
      * @param types
      *            The map of type variables to their assigned types.
@@ -271,10 +707,10 @@ public class Types {
      */
     public static void getHierarchTypes(Map<TypeVariable<?>, Type> types, Type source) {
         if (source != null) {
+            Hierarchy hierarchy = Hierarchy.getInstance(getRawClass(source));
             if (source instanceof ParameterizedType) {
-                ParameterizedType pt = (ParameterizedType) source;
-                Type[] arguments = pt.getActualTypeArguments();
-                TypeVariable<?>[] parameters = getRawClass(source).getTypeParameters();
+                Type[] arguments = getArguments((ParameterizedType) source);
+                TypeVariable<?>[] parameters = hierarchy.parameters;
                 for (int i = 0; i < parameters.length; i++) {
                     Type assignment = null;
                     if (arguments[i] instanceof TypeVariable<?>) {
@@ -283,13 +719,83 @@ public class Types {
                     types.put(parameters[i], assignment == null ? arguments[i] : assignment);
                 }
             }
-            for (Type iface : getRawClass(source).getGenericInterfaces()) {
-                getHierarchTypes(types, iface);
+            Assignments assignments = Assignments.of(types);
+            for (int i = 0; i < hierarchy.variables.length; i++) {
+                types.put(hierarchy.variables[i], substitute(hierarchy.assignments[i], assignments));
             }
-            getHierarchTypes(types, getRawClass(source).getGenericSuperclass());
         }
     }
 
+    /**
+     * Replace the type variables in the given type with their assignments in
+     * the given map of type variable assignments. Unlike
+     * {@link #getActualType(Type, Map) getActualType}, this does not check
+     * the assignments against the bounds of the type variables, and it returns
+     * classes, generic array types and any type that contains no assigned
+     * type variables as is.
+     * 
+     * @param type
+     *            The type.
+     * @param assignments
+     *            The type variable assignments.
+     * @return The type with the assigned type variables replaced.
+     */
+    static Type substitute(Type type, Assignments assignments) {
+        switch (typeAsCode(type)) {
+        case 2:
+            ParameterizedType pt = (ParameterizedType) type;
+            Type[] arguments = getArguments(pt);
+            Type[] actual = substitute(arguments, assignments);
+            Type ownerType = pt.getOwnerType();
+            Type actualOwnerType = ownerType == null ? null : substitute(ownerType, assignments);
+            if (actual == arguments && actualOwnerType == ownerType) {
+                return type;
+            }
+            return new Parameterized(pt.getRawType(), actualOwnerType, actual);
+        case 3:
+            WildcardType wt = (WildcardType) type;
+            Type[] lower = getLowerBounds(wt);
+            Type[] upper = getUpperBounds(wt);
+            Type[] actualLower = substitute(lower, assignments);
+            Type[] actualUpper = substitute(upper, assignments);
+            if (actualLower == lower && actualUpper == upper) {
+                return type;
+            }
+            return new Wildcard(actualLower, actualUpper);
+        case 4:
+            Type assignment = assignments.get((TypeVariable<?>) type);
+            return assignment == null ? type : assignment;
+        default:
+            return type;
+        }
+    }
+
+    /**
+     * Replace the type variables in each of the given types with their
+     * assignments in the given map of type variable assignments. The array is
+     * only copied if one of its elements is replaced.
+     * 
+     * @param types
+     *            The types.
+     * @param assignments
+     *            The type variable assignments.
+     * @return The given array if no type was replaced, otherwise a copy of the
+     *         array with the replaced types.
+     */
+    private static Type[] substitute(Type[] types, Assignments assignments) {
+        Type[] actual = types;
+        for (int i = 0; i < types.length; i++) {
+            Type type = substitute(types[i], assignments);
+            if (type != types[i]) {
+                if (actual == types) {
+                    actual = types.clone();
+                }
+                actual[i] = type;
+            }
+        }
+        return actual;
+    }
+
     /**
      * Determine if one type is assignable from another type. The types must be
      * instances of <code>Class</code> or <code>ParameterizedType</code>.
@@ -302,13 +808,37 @@ public class Types {
      *         to.
      */
     public static boolean isAssignableFrom(Type to, Type from) {
+        if (IlkMetrics.ENABLED) {
+            long start = System.nanoTime();
+            try {
+                return assignable(to, from);
+            } finally {
+                IlkMetrics.ASSIGNABLE.record(start, to);
+            }
+        }
+        return assignable(to, from);
+    }
+
+    /**
+     * The implementation of {@link #isAssignableFrom(Type, Type) isAssignableFrom}
+     * without metrics, called within this class so that only the outermost
+     * call is measured.
+     * 
+     * @param to
+     *            The type to assign to.
+     * @param from
+     *            The type to assign from.
+     * @return True if type to assign form can be assigned to the type to assign
+     *         to.
+     */
+    private static boolean assignable(Type to, Type from) {
         if (getRawClass(to).isAssignableFrom(getRawClass(from))) {
             if (to instanceof Class<?>) { 
                 return true;
             }
-            ParameterizedType actualFrom = (ParameterizedType) getActualType(getRawClass(to), from, new LinkedList<Map<TypeVariable<?>, Type>>());
-            Type[] typesTo = ((ParameterizedType) to).getActualTypeArguments();
-            Type[] typesFrom = actualFrom.getActualTypeArguments();
+            ParameterizedType actualFrom = (ParameterizedType) actualize(getRawClass(to), from, new LinkedList<Assignments>());
+            Type[] typesTo = getArguments((ParameterizedType) to);
+            Type[] typesFrom = getArguments(actualFrom);
             for (int i = 0; i < typesTo.length; i++) {
                 int code = typeAsCode(typesTo[i]);
                 if (code == 3 && code != typeAsCode(typesFrom[i])) {
@@ -337,13 +867,13 @@ public class Types {
      * @return True if the assignment can be assigned to the wildcard type.
      */
     public static boolean checkWildcardType(WildcardType wt, Type assignment, boolean flip) {
-        Type[] lower = wt.getLowerBounds();
+        Type[] lower = getLowerBounds(wt);
         for (int i = 0; i < lower.length; i++) {
             if (!isParameterAssignableFrom(assignment, lower[i])) {
                 return false;
             }
         }
-        Type[] upper = wt.getUpperBounds();
+        Type[] upper = getUpperBounds(wt);
         for (int i = 0; i < upper.length; i++) {
             if (upper[i] instanceof TypeVariable<?>) {
                 TypeVariable<?> upperTypeVariable = (TypeVariable<?>) upper[i];
@@ -363,6 +893,8 @@ public class Types {
      * Check that the given assignment can be assigned to the type variable by
      * checking the type variables bounds throwing an
      * <code>IllegalArgumentException</code> if the type cannot be assigned.
+     * Bounds that are type variables are checked in turn, each type variable
+     * at most once.
      * 
      * @param type
      *            The type variable.
@@ -370,20 +902,27 @@ public class Types {
      *            The assignment.
      */
     public static void checkTypeVariable(Type type, Type assignment) {
-        TypeVariable<?> tv = (TypeVariable<?>) type;
-        for (Type bound : tv.getBounds()) {
-            if (bound instanceof TypeVariable<?>) {
-                checkTypeVariable(bound, assignment);
-            } else if (bound instanceof ParameterizedType) {
-//                if (!isAssignableFrom(getActualType(bound, assignments))) {
-//                    throw new IllegalArgumentException();
-//                }
-            } else if (assignment instanceof WildcardType) {
-                if (!checkWildcardType((WildcardType) assignment, bound, true)) { 
+        // The type variables visited, bounds that are type variables are
+        // visited only once.
+        List<TypeVariable<?>> variables = new ArrayList<TypeVariable<?>>(1);
+        variables.add((TypeVariable<?>) type);
+        for (int i = 0; i < variables.size(); i++) {
+            for (Type bound : variables.get(i).getBounds()) {
+                if (bound instanceof TypeVariable<?>) {
+                    if (!variables.contains(bound)) {
+                        variables.add((TypeVariable<?>) bound);
+                    }
+                } else if (bound instanceof ParameterizedType) {
+//                    if (!isAssignableFrom(getActualType(bound, assignments))) {
+//                        throw new IllegalArgumentException();
+//                    }
+                } else if (assignment instanceof WildcardType) {
+                    if (!checkWildcardType((WildcardType) assignment, bound, true)) { 
+                        throw new IllegalArgumentException();
+                    }
+                } else if (!assignable(bound, assignment)) {
                     throw new IllegalArgumentException();
                 }
-            } else if (!isAssignableFrom(bound, assignment)) {
-                throw new IllegalArgumentException();
             }
         }
     }
@@ -391,6 +930,12 @@ public class Types {
     /**
      * Create an actual sub-type of the given type replacing variables with the
      * types in the given variable map.
+     * <p>
+     * The component type of a generic array type is actualized, so that
+     * <code>T[]</code> becomes <code>String[]</code> when <code>T</code> is
+     * assigned <code>String</code>. The owner type of a nested type is only
+     * actualized if it is a parameterized type. A class owner type, as in
+     * <code>Map.Entry&lt;K, V&gt;</code>, is kept as is.
      * 
      * @param unactualized
      *            The type whose type variables will be assigned types from the
@@ -401,23 +946,102 @@ public class Types {
      * @return The actual type.
      */
     public static Type getActualType(Type unactualized, Map<TypeVariable<?>, Type> assignments) {
-        if (unactualized == null || (unactualized instanceof GenericArrayType)) {
-            return unactualized;
+        return getActualType(unactualized, Assignments.of(assignments));
+    }
+
+    /**
+     * Create an actual sub-type of the given type replacing variables with the
+     * types in the given type variable assignments.
+     * 
+     * @param unactualized
+     *            The type whose type variables will be assigned types from the
+     *            type variable assignments.
+     * @param assignments
+     *            The type variable assignments.
+     * @return The actual type.
+     */
+    static Type getActualType(Type unactualized, Assignments assignments) {
+        if (IlkMetrics.ENABLED) {
+            long start = System.nanoTime();
+            try {
+                return actualize(unactualized, assignments);
+            } finally {
+                IlkMetrics.ACTUAL_TYPE.record(start, unactualized);
+            }
         }
-        if (unactualized instanceof WildcardType) {
-            WildcardType wt = (WildcardType) unactualized;
-            Type[] lower = wt.getLowerBounds();
-            for (int i = 0; i < lower.length; i++) {
-                lower[i] = getActualType(lower[i], assignments);
+        return actualize(unactualized, assignments);
+    }
+
+    /**
+     * The implementation of {@link #getActualType(Type, Map) getActualType}
+     * without metrics, called within this class so that only the outermost
+     * call is measured.
+     * 
+     * @param unactualized
+     *            The type whose type variables will be assigned types from the
+     *            type variable assignments.
+     * @param assignments
+     *            The type variable assignments.
+     * @return The actual type.
+     */
+    private static Type actualize(Type unactualized, Assignments assignments) {
+        if (isActualLeaf(unactualized)) {
+            return actualizeLeaf(unactualized, assignments);
+        }
+        List<ActualFrame> stack = new ArrayList<ActualFrame>();
+        stack.add(new ActualFrame(unactualized));
+        for (;;) {
+            ActualFrame frame = stack.get(stack.size() - 1);
+            if (frame.index < frame.members.length) {
+                Type member = frame.members[frame.index];
+                if (isActualLeaf(member)) {
+                    frame.actual[frame.index++] = actualizeLeaf(member, assignments);
+                } else {
+                    stack.add(new ActualFrame(member));
+                }
+                continue;
             }
-            Type[] upper = wt.getUpperBounds();
-            for (int i = 0; i < upper.length; i++) {
-                upper[i] = getActualType(upper[i], assignments);
+            Type actual = frame.create();
+            stack.remove(stack.size() - 1);
+            if (stack.isEmpty()) {
+                return actual;
             }
-            return new Types.Wildcard(lower, upper);
-        } 
+            ActualFrame parent = stack.get(stack.size() - 1);
+            parent.actual[parent.index++] = actual;
+        }
+    }
+
+    /**
+     * Determine whether the given type is actualized without visiting
+     * members because it has none.
+     * 
+     * @param type
+     *            The type.
+     * @return True if the type has no members to actualize.
+     */
+    private static boolean isActualLeaf(Type type) {
+        if (type instanceof ParameterizedType || type instanceof WildcardType || type instanceof GenericArrayType) {
+            return false;
+        }
+        if (type instanceof Class<?>) {
+            return ((Class<?>) type).getTypeParameters().length == 0;
+        }
+        return true;
+    }
+
+    /**
+     * Actualize a type that has no members to actualize, replacing a type
+     * variable with its assignment if any.
+     * 
+     * @param unactualized
+     *            The type.
+     * @param assignments
+     *            The type variable assignments.
+     * @return The actual type.
+     */
+    private static Type actualizeLeaf(Type unactualized, Assignments assignments) {
         if (unactualized instanceof TypeVariable<?>) {
-            Type actual = assignments.get(unactualized);
+            Type actual = assignments.get((TypeVariable<?>) unactualized);
             if (actual == null) {
                 return unactualized;
             }
@@ -428,29 +1052,106 @@ public class Types {
             }
             return actual;
         }
-        if (unactualized instanceof ParameterizedType) {
-            ParameterizedType pt = (ParameterizedType) unactualized;
-            Type[] parameters = pt.getActualTypeArguments();
-            Type[] actual = new Type[parameters.length];
-            for (int i = 0; i < parameters.length; i++) {
-                actual[i] = getActualType(parameters[i], assignments);
-            }
-            Type ownerType = pt.getOwnerType();
-            if (ownerType != null && ((ownerType instanceof Class<?>) || (ownerType instanceof ParameterizedType))) {
-                ownerType = getActualType(ownerType, assignments);
+        return unactualized;
+    }
+
+    /**
+     * The state of actualizing a compound type on the explicit stack used by
+     * {@link Types#actualize(Type, Assignments) actualize}. The members of the type
+     * are actualized in order, and the actual type is created from the actual
+     * members.
+     * 
+     * @author Alan Gutierrez
+     */
+    private final static class ActualFrame {
+        /** The unactualized type. */
+        private final Type type;
+
+        /** The members to actualize. */
+        public final Type[] members;
+
+        /** The actualized members. */
+        public final Type[] actual;
+
+        /** The index of the member being actualized. */
+        public int index;
+
+        /**
+         * Create a frame to actualize the given parameterized type, wildcard
+         * type, generic array type or generic class. The members of a
+         * parameterized type are its arguments followed by its owner type, if
+         * the owner type is a parameterized type. An owner type that is a
+         * class declares no type variables visible to the nested type, so it
+         * is kept as is. The members of a wildcard type are its lower bounds
+         * followed by its upper bounds. The member of a generic array type is
+         * its component type. The members of a generic class are its type
+         * parameters.
+         * 
+         * @param type
+         *            The unactualized type.
+         */
+        public ActualFrame(Type type) {
+            this.type = type;
+            if (type instanceof ParameterizedType) {
+                ParameterizedType pt = (ParameterizedType) type;
+                Type[] arguments = getArguments(pt);
+                Type ownerType = pt.getOwnerType();
+                if (ownerType instanceof ParameterizedType) {
+                    members = new Type[arguments.length + 1];
+                    System.arraycopy(arguments, 0, members, 0, arguments.length);
+                    members[arguments.length] = ownerType;
+                } else {
+                    members = arguments;
+                }
+            } else if (type instanceof WildcardType) {
+                WildcardType wt = (WildcardType) type;
+                Type[] lower = getLowerBounds(wt);
+                Type[] upper = getUpperBounds(wt);
+                members = new Type[lower.length + upper.length];
+                System.arraycopy(lower, 0, members, 0, lower.length);
+                System.arraycopy(upper, 0, members, lower.length, upper.length);
+            } else if (type instanceof GenericArrayType) {
+                members = new Type[] { ((GenericArrayType) type).getGenericComponentType() };
+            } else {
+                members = ((Class<?>) type).getTypeParameters();
             }
-            return new Types.Parameterized(getRawClass(unactualized), ownerType, actual);
-        }
-        TypeVariable<?>[] variables = getRawClass(unactualized).getTypeParameters();
-        if (variables.length == 0) {
-            return getRawClass(unactualized);
+            actual = new Type[members.length];
         }
-        Type[] actual = new Type[variables.length];
-        for (int i = 0; i < variables.length; i++) {
-            actual[i] = getActualType(variables[i], assignments);
+
+        /**
+         * Create the actual type from the actualized members.
+         * 
+         * @return The actual type.
+         */
+        public Type create() {
+            if (type instanceof ParameterizedType) {
+                ParameterizedType pt = (ParameterizedType) type;
+                int count = getArguments(pt).length;
+                Type ownerType = pt.getOwnerType();
+                Type[] arguments = actual;
+                if (count != actual.length) {
+                    ownerType = actual[count];
+                    arguments = new Type[count];
+                    System.arraycopy(actual, 0, arguments, 0, count);
+                }
+                return new Types.Parameterized(getRawClass(type), ownerType, arguments);
+            }
+            if (type instanceof WildcardType) {
+                Type[] lower = new Type[getLowerBounds((WildcardType) type).length];
+                Type[] upper = new Type[actual.length - lower.length];
+                System.arraycopy(actual, 0, lower, 0, lower.length);
+                System.arraycopy(actual, lower.length, upper, 0, upper.length);
+                return new Types.Wildcard(lower, upper);
+            }
+            if (type instanceof GenericArrayType) {
+                if (actual[0] instanceof Class<?>) {
+                    return Array.newInstance((Class<?>) actual[0], 0).getClass();
+                }
+                return new Types.GenericArray(actual[0]);
+            }
+            // Bogus temporary owner type and the null is very important.
+            return new Types.Parameterized(getRawClass(type), null, actual);
         }
-        // Bogus temporary owner type and the null is very important.
-        return new Types.Parameterized(getRawClass(unactualized), null, actual);
     }
 
     /**
@@ -475,6 +1176,13 @@ public class Types {
      * The linked list of type variable assignment maps is used to create a list
      * of the type variable assignment maps for a nested types and their parent
      * types.
+     * <p>
+     * The assignments of each hierarchy are created in a slot table from the
+     * template of the raw class of the actualized type. When the actual type
+     * has been created, each slot table is copied into a map and added to the
+     * front of the given list, the actualized type first. Any maps already in
+     * the given list are applied after the assignments of the actualized type
+     * and its owner types.
      * 
      * @param unactualized
      *            The unactualized type.
@@ -487,6 +1195,45 @@ public class Types {
      *         actualized type.
      */
     public static Type getActualType(Type unactualized, Type actualized, LinkedList<Map<TypeVariable<?>, Type>> assignments) {
+        LinkedList<Assignments> list = new LinkedList<Assignments>();
+        for (Map<TypeVariable<?>, Type> map : assignments) {
+            list.add(Assignments.of(map));
+        }
+        int given = list.size();
+        Type actual;
+        if (IlkMetrics.ENABLED) {
+            long start = System.nanoTime();
+            try {
+                actual = actualize(unactualized, actualized, list);
+            } finally {
+                IlkMetrics.ACTUAL_TYPE.record(start, actualized);
+            }
+        } else {
+            actual = actualize(unactualized, actualized, list);
+        }
+        for (int i = list.size() - given - 1; i >= 0; i--) {
+            assignments.addFirst(((Assignments.Slots) list.get(i)).toMap());
+        }
+        return actual;
+    }
+
+    /**
+     * The implementation of {@link #getActualType(Type, Type, LinkedList) getActualType}
+     * without metrics, called within this package so that only the outermost
+     * call is measured and the assignments stay in slot tables instead of
+     * being copied into maps.
+     * 
+     * @param unactualized
+     *            The unactualized type.
+     * @param actualized
+     *            The actualized type.
+     * @param assignments
+     *            A linked list of type variable assignments.
+     * @return An actual type created by replacing the type variables of the
+     *         unactualized type with the type variable assignments of the
+     *         actualized type.
+     */
+    static Type actualize(Type unactualized, Type actualized, LinkedList<Assignments> assignments) {
         Type ownerType = null;
         Class<?> rawClass = getRawClass(unactualized);
         if (rawClass != null && rawClass.getDeclaringClass() != null) {
@@ -494,17 +1241,18 @@ public class Types {
             if (actualized instanceof ParameterizedType) {
                 actualizedOwner = ((ParameterizedType) actualized).getOwnerType();
             }
-            ownerType = getActualType(getRawClass(unactualized).getDeclaringClass(), actualizedOwner, assignments);
+            ownerType = actualize(getRawClass(unactualized).getDeclaringClass(), actualizedOwner, assignments);
+        }
+        if (actualized != null) {
+            assignments.addFirst(Hierarchy.getInstance(getRawClass(actualized)).instantiate(actualized));
         }
-        assignments.addFirst(new HashMap<TypeVariable<?>, Type>());
-        getHierarchTypes(assignments.getFirst(), actualized);
         Type actual = unactualized;
-        for (Map<TypeVariable<?>, Type> assignment : assignments) {
-            actual = getActualType(actual, assignment);
+        for (Assignments assignment : assignments) {
+            actual = actualize(actual, assignment);
         }
         if (actual instanceof ParameterizedType) {
             ParameterizedType pt = (ParameterizedType) actual;
-            return new Parameterized(pt.getRawType(), ownerType, pt.getActualTypeArguments());
+            return new Parameterized(pt.getRawType(), ownerType, getArguments(pt));
         }
         return actual;
     }
@@ -516,12 +1264,16 @@ public class Types {
      * of the 5 classes derived from <code>Type</code>. The <code>Class</code>
      * and any types not derived from <code>Type</code> share the same code,
      * since classes are tested for equality using <code>Object.equals()</code>.
+     * Classes are the most common type, so they are tested first.
      * 
      * @param type
      *            The type.
      * @return An integer type.
      */
     private static int typeAsCode(Object type) {
+        if (type instanceof Class<?>) {
+            return 5;
+        }
         if (type instanceof GenericArrayType) {
             return 1;
         } 
@@ -563,12 +1315,11 @@ public class Types {
     }
 
     /**
-     * Determine if the two type objects are equal, recursively comparing their
-     * properties if they are <code>Type</code> derived objects. This method
-     * accepts <code>Object</code> and not <code>Type</code> so that is can be
-     * used to compare the return value of
-     * {@link TypeVariable#getGenericDeclaration()}, which is
-     * <code>Object</code>.
+     * Determine if the two type objects are equal, comparing their properties
+     * if they are <code>Type</code> derived objects. This method accepts
+     * <code>Object</code> and not <code>Type</code> so that is can be used to
+     * compare the return value of {@link TypeVariable#getGenericDeclaration()},
+     * which is <code>Object</code>.
      * <p>
      * Generally, both types are <code>Type</code> derived objects, they are
      * equals if they are the same derived type, and if all their members are
@@ -576,6 +1327,16 @@ public class Types {
      * <code>Object.equals()</code>. <code>Class</code> an any other objects
      * that are not derived from <code>Object</code> are tested using
      * <code>Object.equals()</code>.
+     * <p>
+     * Parameterized types and wildcard types implemented by <code>Types</code>
+     * carry a hash code calculated at construction, so two of them with
+     * different hash codes are rejected without visiting their members.
+     * <p>
+     * Type trees no deeper than {@link #MAXIMUM_RECURSIVE_DEPTH} are compared
+     * by recursion, which allocates nothing. The members of deeper trees are
+     * compared using an explicit stack of pairs, so deeply nested types do not
+     * consume the call stack. Type variables are compared by their declaration and name and not by their
+     * bounds, so recursive bounds are never followed.
      * 
      * @param left
      *            An object to test for equality.
@@ -588,41 +1349,195 @@ public class Types {
         if (left == null || right == null) {
             return left == null && right == null;
         }
+        if (left == right) {
+            return true;
+        }
+        if (left instanceof Class<?> || right instanceof Class<?>) {
+            return left.equals(right);
+        }
+        if (getDepth(left) <= MAXIMUM_RECURSIVE_DEPTH) {
+            return recursiveEquals(left, right);
+        }
+        List<Type> pairs = new ArrayList<Type>();
+        pairs.add(left);
+        pairs.add(right);
+        return equals(pairs);
+    }
+
+    /**
+     * Determine if the two types are equal by recursion, for type trees that
+     * are not deeper than {@link #MAXIMUM_RECURSIVE_DEPTH}. The recursion is
+     * bounded by the depth of the left type, since the members of the two
+     * types are visited together.
+     * 
+     * @param left
+     *            A type to test for equality.
+     * @param right
+     *            Another type to test for equality.
+     * @return True if the types are equal.
+     */
+    private static boolean recursiveEquals(Type left, Type right) {
+        if (left == right) {
+            return true;
+        }
+        if (left == null || right == null) {
+            return false;
+        }
+        if (left instanceof Parameterized && right instanceof Parameterized) {
+            if (((Parameterized) left).hash != ((Parameterized) right).hash) {
+                return false;
+            }
+        } else if (left instanceof Wildcard && right instanceof Wildcard) {
+            if (((Wildcard) left).hash != ((Wildcard) right).hash) {
+                return false;
+            }
+        }
         int leftTypeAsCode = typeAsCode(left);
-        if (leftTypeAsCode == typeAsCode(right)) {
+        if (leftTypeAsCode != typeAsCode(right)) {
+            return false;
+        }
+        switch (leftTypeAsCode) {
+        case 1:
+            return recursiveEquals(((GenericArrayType) left).getGenericComponentType(), ((GenericArrayType) right).getGenericComponentType());
+        case 2:
+            ParameterizedType ptLeft = (ParameterizedType) left;
+            ParameterizedType ptRight = (ParameterizedType) right;
+            return ptLeft.getRawType().equals(ptRight.getRawType())
+                && recursiveEquals(getArguments(ptLeft), getArguments(ptRight))
+                && recursiveEquals(ptLeft.getOwnerType(), ptRight.getOwnerType());
+        case 3:
+            WildcardType wtLeft = (WildcardType) left;
+            WildcardType wtRight = (WildcardType) right;
+            return recursiveEquals(getUpperBounds(wtLeft), getUpperBounds(wtRight))
+                && recursiveEquals(getLowerBounds(wtLeft), getLowerBounds(wtRight));
+        default:
+            return left.equals(right);
+        }
+    }
+
+    /**
+     * Determine if the two arrays of types are equal by recursion.
+     * 
+     * @param lefts
+     *            An array of types to test for equality.
+     * @param rights
+     *            Another array of types to test for equality.
+     * @return True if the arrays of types are equal.
+     */
+    private static boolean recursiveEquals(Type[] lefts, Type[] rights) {
+        if (lefts.length != rights.length) {
+            return false;
+        }
+        for (int i = 0; i < lefts.length; i++) {
+            if (!recursiveEquals(lefts[i], rights[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determine if each of the pairs of types on the given stack are equal.
+     * The stack is a list of alternating left and right types, with the pair
+     * at the end of the list compared first. The members of compound types
+     * are pushed onto the stack as they are visited.
+     * 
+     * @param pairs
+     *            The stack of pairs of types to compare.
+     * @return True if every pair of types is equal.
+     */
+    private static boolean equals(List<Type> pairs) {
+        while (!pairs.isEmpty()) {
+            Type right = pairs.remove(pairs.size() - 1);
+            Type left = pairs.remove(pairs.size() - 1);
+            if (left == right) {
+                continue;
+            }
+            if (left == null || right == null) {
+                return false;
+            }
+            if (left instanceof Parameterized && right instanceof Parameterized) {
+                if (((Parameterized) left).hash != ((Parameterized) right).hash) {
+                    return false;
+                }
+            } else if (left instanceof Wildcard && right instanceof Wildcard) {
+                if (((Wildcard) left).hash != ((Wildcard) right).hash) {
+                    return false;
+                }
+            }
+            int leftTypeAsCode = typeAsCode(left);
+            if (leftTypeAsCode != typeAsCode(right)) {
+                return false;
+            }
             switch (leftTypeAsCode) {
             case 1:
-                return equals(((GenericArrayType) left).getGenericComponentType(), ((GenericArrayType) right).getGenericComponentType());
+                pairs.add(((GenericArrayType) left).getGenericComponentType());
+                pairs.add(((GenericArrayType) right).getGenericComponentType());
+                break;
             case 2:
                 ParameterizedType ptLeft = (ParameterizedType) left;
                 ParameterizedType ptRight = (ParameterizedType) right;
-                return ptLeft.getRawType().equals(ptRight.getRawType())
-                    && equals(ptLeft.getOwnerType(), ptRight.getOwnerType())
-                    && equals(ptLeft.getActualTypeArguments(), ptRight.getActualTypeArguments());
+                if (!ptLeft.getRawType().equals(ptRight.getRawType())
+                        || !push(pairs, getArguments(ptLeft), getArguments(ptRight))) {
+                    return false;
+                }
+                pairs.add(ptLeft.getOwnerType());
+                pairs.add(ptRight.getOwnerType());
+                break;
             case 3:
                 WildcardType wtLeft = (WildcardType) left;
                 WildcardType wtRight = (WildcardType) right;
-                return equals(wtLeft.getLowerBounds(), wtRight.getLowerBounds())
-                    && equals(wtLeft.getUpperBounds(), wtRight.getUpperBounds());
+                if (!push(pairs, getUpperBounds(wtLeft), getUpperBounds(wtRight))
+                        || !push(pairs, getLowerBounds(wtLeft), getLowerBounds(wtRight))) {
+                    return false;
+                }
+                break;
             default:
-                return left.equals(right);
+                if (!left.equals(right)) {
+                    return false;
+                }
             }
         }
-        return false;
+        return true;
+    }
+
+    /**
+     * Push the elements of the given arrays onto the given stack of pairs of
+     * types to compare, so that the first elements are compared first.
+     * 
+     * @param pairs
+     *            The stack of pairs of types to compare.
+     * @param lefts
+     *            An array of types to compare.
+     * @param rights
+     *            Another array of types to compare.
+     * @return False if the arrays are not the same length.
+     */
+    private static boolean push(List<Type> pairs, Type[] lefts, Type[] rights) {
+        if (lefts.length != rights.length) {
+            return false;
+        }
+        for (int i = lefts.length - 1; i >= 0; i--) {
+            pairs.add(lefts[i]);
+            pairs.add(rights[i]);
+        }
+        return true;
     }
 
     /**
      * Generate a hash code from the given list of <code>Type</code> instances.
      * <p>
-     * The case of <code>A&lt;B extends C&lt;? super B&gt;&gt;</code> will
-     * recurse, in equality too. A real problem for equality. Equality of type
-     * variables hsa more to do with the position of the type varaible and its
-     * definition, since it cannot change, and since we're not building nonsense
-     * ones, are we? We're replacing them with actual types, not new type
-     * variables, since this is an actualization library. So, type variables, we
-     * cannot manufacture them, and they are defined in source, so we create a
-     * hash from their declaration and their position in the parameter list, or
-     * just their name, we can equate them using their declaring type and name.
+     * The case of <code>A&lt;B extends C&lt;? super B&gt;&gt;</code> would
+     * recurse if the bounds of type variables were visited, in equality too.
+     * Type variables cannot be manufactured, they are defined in source, so
+     * they are hashed and compared by their declaration and name and their
+     * bounds are never visited.
+     * <p>
+     * The hash codes of the parameterized types and wildcard types implemented
+     * by <code>Types</code> are calculated once at construction and are not
+     * recalculated here. Other compound types are visited by recursion if
+     * they are no deeper than {@link #MAXIMUM_RECURSIVE_DEPTH} and using an
+     * explicit stack otherwise.
      * 
      * @param types
      *            The types.
@@ -632,24 +1547,180 @@ public class Types {
         int hashCode = 0;
         for (Type type : types) {
             if (type != null) {
-                hashCode *= 37;
-                switch (typeAsCode(type)) {
-                case 1:
-                    hashCode ^= hashCode(((GenericArrayType) type).getGenericComponentType());
-                    break;
-                case 2:
-                    ParameterizedType pt = (ParameterizedType) type;
-                    hashCode ^= pt.getRawType().hashCode() ^ hashCode(pt.getOwnerType()) ^ hashCode(pt.getActualTypeArguments());
+                hashCode = hashCode * 37 ^ nodeHashCode(type);
+            }
+        }
+        return hashCode;
+    }
+
+    /**
+     * Get the hash code of a single type node, returning the cached hash code
+     * of the types implemented by <code>Types</code> or visiting the members
+     * of other compound types.
+     * 
+     * @param type
+     *            The type.
+     * @return The hash code of the type.
+     */
+    private static int nodeHashCode(Type type) {
+        switch (typeAsCode(type)) {
+        case 1:
+            break;
+        case 2:
+            if (type instanceof Parameterized) {
+                return ((Parameterized) type).hash;
+            }
+            break;
+        case 3:
+            if (type instanceof Wildcard) {
+                return ((Wildcard) type).hash;
+            }
+            break;
+        default:
+            return type.hashCode();
+        }
+        if (getDepth(type) <= MAXIMUM_RECURSIVE_DEPTH) {
+            return recursiveHashCode(type);
+        }
+        return walkHashCode(type);
+    }
+
+    /**
+     * Calculate the hash code of the given compound type by recursion, with
+     * the same result as {@link #walkHashCode(Type) walkHashCode}, for type
+     * trees that are not deeper than {@link #MAXIMUM_RECURSIVE_DEPTH}.
+     * 
+     * @param type
+     *            The compound type.
+     * @return The hash code of the type.
+     */
+    private static int recursiveHashCode(Type type) {
+        switch (typeAsCode(type)) {
+        case 1:
+            return nodeHashCode(((GenericArrayType) type).getGenericComponentType());
+        case 2:
+            ParameterizedType pt = (ParameterizedType) type;
+            Type ownerType = pt.getOwnerType();
+            return pt.getRawType().hashCode() ^ (ownerType == null ? 0 : nodeHashCode(ownerType)) ^ hashCode(getArguments(pt));
+        default:
+            WildcardType wt = (WildcardType) type;
+            return hashCode(getLowerBounds(wt)) ^ hashCode(getUpperBounds(wt));
+        }
+    }
+
+    /**
+     * Calculate the hash code of the given compound type using an explicit
+     * stack of the arrays of types being hashed. The hash code of a
+     * parameterized type is the hash code of its raw type combined with the
+     * hash code of its owner type and of its arguments, the hash code of a
+     * wildcard type is the hash code of its lower bounds combined with that of
+     * its upper bounds, and the hash code of a generic array type is that of
+     * its component type.
+     * 
+     * @param root
+     *            The compound type.
+     * @return The hash code of the type.
+     */
+    private static int walkHashCode(Type root) {
+        List<HashFrame> stack = new ArrayList<HashFrame>();
+        stack.add(new HashFrame(null, new Type[] { root }));
+        for (;;) {
+            HashFrame frame = stack.get(stack.size() - 1);
+            if (frame.visiting) {
+                frame.visiting = false;
+                frame.hash ^= frame.node;
+                frame.index++;
+            }
+            if (frame.index == frame.types.length) {
+                stack.remove(stack.size() - 1);
+                if (stack.isEmpty()) {
+                    return frame.hash;
+                }
+                frame.parent.node ^= frame.hash;
+                continue;
+            }
+            Type type = frame.types[frame.index];
+            if (type == null) {
+                frame.index++;
+                continue;
+            }
+            frame.hash *= 37;
+            switch (typeAsCode(type)) {
+            case 1:
+                frame.node = 0;
+                frame.visiting = true;
+                stack.add(new HashFrame(frame, new Type[] { ((GenericArrayType) type).getGenericComponentType() }));
+                break;
+            case 2:
+                if (type instanceof Parameterized) {
+                    frame.hash ^= ((Parameterized) type).hash;
+                    frame.index++;
                     break;
-                case 3:
-                    WildcardType wt = (WildcardType) type;
-                    hashCode ^= hashCode(wt.getLowerBounds()) ^ hashCode(wt.getUpperBounds());
+                }
+                ParameterizedType pt = (ParameterizedType) type;
+                frame.node = pt.getRawType().hashCode();
+                frame.visiting = true;
+                stack.add(new HashFrame(frame, new Type[] { pt.getOwnerType() }));
+                stack.add(new HashFrame(frame, getArguments(pt)));
+                break;
+            case 3:
+                if (type instanceof Wildcard) {
+                    frame.hash ^= ((Wildcard) type).hash;
+                    frame.index++;
                     break;
-                default:
-                    hashCode ^=  type.hashCode();
                 }
+                WildcardType wt = (WildcardType) type;
+                frame.node = 0;
+                frame.visiting = true;
+                stack.add(new HashFrame(frame, getLowerBounds(wt)));
+                stack.add(new HashFrame(frame, getUpperBounds(wt)));
+                break;
+            default:
+                frame.hash ^= type.hashCode();
+                frame.index++;
             }
         }
-        return hashCode;
+    }
+
+    /**
+     * The state of hashing an array of types on the explicit stack used by
+     * {@link Types#walkHashCode(Type) walkHashCode}.
+     *
+     * @author Alan Gutierrez
+     */
+    private final static class HashFrame {
+        /**
+         * The frame of the type whose members are hashed by this frame, or
+         * null for the outermost frame.
+         */
+        public final HashFrame parent;
+
+        /** The array of types. */
+        public final Type[] types;
+
+        /** The index of the type being hashed. */
+        public int index;
+
+        /** The hash code of the types hashed so far. */
+        public int hash;
+
+        /** The hash code of the members of the type being hashed. */
+        public int node;
+
+        /** Whether the members of the type at the index are being hashed. */
+        public boolean visiting;
+
+        /**
+         * Create a frame to hash the given array of types.
+         * 
+         * @param parent
+         *            The frame of the type whose members are hashed.
+         * @param types
+         *            The array of types.
+         */
+        public HashFrame(HashFrame parent, Type[] types) {
+            this.parent = parent;
+            this.types = types;
+        }
     }
 }
@@ -0,0 +1,315 @@
+package com.goodworkalan.ilk.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.tools.Diagnostic;
+
+import com.goodworkalan.ilk.IlkConstant;
+
+/**
+ * Generates constant super type tokens for the types of fields marked with
+ * {@link IlkConstant}.
+ * <p>
+ * The types supported are classes, primitives, arrays of classes and
+ * parameterized types whose arguments are themselves supported or are
+ * wildcards. Type variables, generic array types and parameterized types whose
+ * owner type is parameterized are reported as errors.
+ * <p>
+ * The processor is not registered as a service in the Ilk jar, so that
+ * projects that depend on Ilk do not have annotation processing enabled by
+ * discovery, nor the warning about implicit annotation processing that
+ * recent compilers give when a processor is discovered. It is named
+ * explicitly when compiling the classes that use {@link IlkConstant}.
+ * <pre>
+ * javac -processor com.goodworkalan.ilk.processor.IlkConstantProcessor ...
+ * </pre>
+ *
+ * @author Alan Gutierrez
+ */
+@SupportedAnnotationTypes("com.goodworkalan.ilk.IlkConstant")
+public class IlkConstantProcessor extends AbstractProcessor {
+    /**
+     * Get the latest source version, since the processor only reads the
+     * types of fields.
+     *
+     * @return The latest supported source version.
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Generate a class of constant super type tokens for each class that
+     * declares fields marked with <code>IlkConstant</code>.
+     *
+     * @param annotations
+     *            The annotation types requested to be processed.
+     * @param roundEnv
+     *            The environment of the current round.
+     * @return True to claim the <code>IlkConstant</code> annotation.
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Map<TypeElement, List<VariableElement>> fields = new LinkedHashMap<TypeElement, List<VariableElement>>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(IlkConstant.class)) {
+            if (element.getKind() == ElementKind.FIELD) {
+                TypeElement owner = (TypeElement) element.getEnclosingElement();
+                List<VariableElement> declared = fields.get(owner);
+                if (declared == null) {
+                    declared = new ArrayList<VariableElement>();
+                    fields.put(owner, declared);
+                }
+                declared.add((VariableElement) element);
+            }
+        }
+        for (Map.Entry<TypeElement, List<VariableElement>> entry : fields.entrySet()) {
+            generate(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+    /**
+     * Generate the class of constant super type tokens for the given fields
+     * of the given class.
+     *
+     * @param owner
+     *            The class that declares the fields.
+     * @param fields
+     *            The marked fields.
+     */
+    private void generate(TypeElement owner, List<VariableElement> fields) {
+        List<String> declarations = new ArrayList<String>();
+        List<String> checks = new ArrayList<String>();
+        for (VariableElement field : fields) {
+            String expression = expression(field.asType());
+            if (expression == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot generate a super type token for " + field.asType() + ".", field);
+                return;
+            }
+            String constant = getConstantName(field.getSimpleName().toString());
+            String type = getTypeName(field.asType());
+            declarations.add("    /** The super type token of the type of {@link " + owner.getQualifiedName() + "#" + field.getSimpleName() + "}. */");
+            declarations.add("    @SuppressWarnings(\"unchecked\")");
+            declarations.add("    public static final Ilk<" + type + "> " + constant + " = (Ilk<" + type + ">) (Ilk<?>) " + expression + ";");
+            declarations.add("");
+            checks.add("        check(" + constant + ", " + owner.getQualifiedName() + ".class, \"" + field.getSimpleName() + "\");");
+        }
+        String packageName = getPackage(owner).getQualifiedName().toString();
+        String className = getClassName(owner);
+        String qualifiedName = packageName.length() == 0 ? className : packageName + "." + className;
+        try {
+            PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(qualifiedName, owner).openWriter());
+            try {
+                if (packageName.length() != 0) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("import com.goodworkalan.ilk.Ilk;");
+                out.println();
+                out.println("/**");
+                out.println(" * Constant super type tokens for the marked fields of {@link " + owner.getQualifiedName() + "}.");
+                out.println(" */");
+                out.println("public final class " + className + " {");
+                for (String line : declarations) {
+                    out.println(line);
+                }
+                out.println("    /** Do not construct. */");
+                out.println("    private " + className + "() {");
+                out.println("    }");
+                out.println();
+                out.println("    /**");
+                out.println("     * Check that the key of the given super type token is equal to the key of");
+                out.println("     * the generic type of the given field.");
+                out.println("     */");
+                out.println("    private static void check(Ilk<?> ilk, Class<?> owner, String name) {");
+                out.println("        try {");
+                out.println("            if (!ilk.key.equals(new Ilk.Key(owner.getDeclaredField(name).getGenericType()))) {");
+                out.println("                throw new IllegalStateException(owner.getName() + \".\" + name);");
+                out.println("            }");
+                out.println("        } catch (NoSuchFieldException e) {");
+                out.println("            throw new IllegalStateException(owner.getName() + \".\" + name, e);");
+                out.println("        }");
+                out.println("    }");
+                out.println();
+                out.println("    /**");
+                out.println("     * Check that each generated super type token is equal to the super type");
+                out.println("     * token of the generic type of its field obtained through reflection.");
+                out.println("     *");
+                out.println("     * @exception IllegalStateException");
+                out.println("     *                If a generated super type token is not equal.");
+                out.println("     */");
+                out.println("    public static void verify() {");
+                for (String line : checks) {
+                    out.println(line);
+                }
+                out.println("    }");
+                out.println("}");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Cannot write " + qualifiedName + ": " + e.getMessage(), owner);
+        }
+    }
+
+    /**
+     * Get the package of the given class.
+     *
+     * @param owner
+     *            The class.
+     * @return The package.
+     */
+    private PackageElement getPackage(TypeElement owner) {
+        Element element = owner;
+        while (element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement) element;
+    }
+
+    /**
+     * Get the name of the generated class for the given class, the simple
+     * names of the class and its enclosing classes joined by underscores and
+     * followed by <code>Ilks</code>.
+     *
+     * @param owner
+     *            The class.
+     * @return The name of the generated class.
+     */
+    private String getClassName(TypeElement owner) {
+        StringBuilder newString = new StringBuilder(owner.getSimpleName());
+        Element element = owner.getEnclosingElement();
+        while (element.getKind() != ElementKind.PACKAGE) {
+            newString.insert(0, '_').insert(0, element.getSimpleName());
+            element = element.getEnclosingElement();
+        }
+        return newString.append("Ilks").toString();
+    }
+
+    /**
+     * Convert the given field name into a constant name, in upper case with
+     * underscores separating words.
+     *
+     * @param name
+     *            The field name.
+     * @return The constant name.
+     */
+    static String getConstantName(String name) {
+        StringBuilder newString = new StringBuilder();
+        for (int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if (Character.isUpperCase(ch) && i != 0 && !Character.isUpperCase(name.charAt(i - 1)) && name.charAt(i - 1) != '_') {
+                newString.append('_');
+            }
+            newString.append(Character.toUpperCase(ch));
+        }
+        return newString.toString();
+    }
+
+    /**
+     * Get the type argument of the super type token of the given type, the
+     * boxed class of a primitive type or the type itself.
+     *
+     * @param type
+     *            The type.
+     * @return The type argument in Java source form.
+     */
+    private String getTypeName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+        }
+        return type.toString();
+    }
+
+    /**
+     * Create the Java source expression that builds the super type token of
+     * the given type.
+     *
+     * @param type
+     *            The type.
+     * @return The expression or null if the type is not supported.
+     */
+    private String expression(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return "Ilk.of(" + type + ".class)";
+        }
+        if (type.getKind() == TypeKind.ARRAY) {
+            TypeMirror componentType = ((ArrayType) type).getComponentType();
+            while (componentType.getKind() == TypeKind.ARRAY) {
+                componentType = ((ArrayType) componentType).getComponentType();
+            }
+            if (componentType.getKind().isPrimitive()
+                    || (componentType.getKind() == TypeKind.DECLARED && ((DeclaredType) componentType).getTypeArguments().isEmpty())) {
+                return "Ilk.of(" + processingEnv.getTypeUtils().erasure(type) + ".class)";
+            }
+            return null;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        DeclaredType declared = (DeclaredType) type;
+        String rawClass = ((TypeElement) declared.asElement()).getQualifiedName() + ".class";
+        if (declared.getTypeArguments().isEmpty()) {
+            return "Ilk.of(" + rawClass + ")";
+        }
+        TypeMirror ownerType = declared.getEnclosingType();
+        if (ownerType.getKind() == TypeKind.DECLARED && !((DeclaredType) ownerType).getTypeArguments().isEmpty()) {
+            return null;
+        }
+        StringBuilder newString = new StringBuilder("Ilk.of(").append(rawClass);
+        for (TypeMirror argument : declared.getTypeArguments()) {
+            String expression = argument(argument);
+            if (expression == null) {
+                return null;
+            }
+            newString.append(", ").append(expression);
+        }
+        return newString.append(")").toString();
+    }
+
+    /**
+     * Create the Java source expression that builds the super type token of
+     * the given type argument, which may be a wildcard.
+     *
+     * @param argument
+     *            The type argument.
+     * @return The expression or null if the type is not supported.
+     */
+    private String argument(TypeMirror argument) {
+        if (argument.getKind() != TypeKind.WILDCARD) {
+            return expression(argument);
+        }
+        WildcardType wildcard = (WildcardType) argument;
+        if (wildcard.getExtendsBound() != null) {
+            String bound = expression(wildcard.getExtendsBound());
+            return bound == null ? null : "Ilk.wildcardExtends(" + bound + ")";
+        }
+        if (wildcard.getSuperBound() != null) {
+            String bound = expression(wildcard.getSuperBound());
+            return bound == null ? null : "Ilk.wildcardSuper(" + bound + ")";
+        }
+        return "Ilk.wildcard()";
+    }
+}
@@ -0,0 +1,92 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link AssignableCache} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class AssignableCacheTest {
+    /** A repeated test is answered from the cache. */
+    @Test
+    public void hit() {
+        AssignableCache cache = new AssignableCache(16);
+        Ilk.Key list = new Ilk<List<String>>() {}.key;
+        Ilk.Key arrayList = new Ilk<ArrayList<String>>() {}.key;
+        assertTrue(cache.isAssignableFrom(list, arrayList));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertTrue(cache.isAssignableFrom(new Ilk<List<String>>() {}.key, new Ilk<ArrayList<String>>() {}.key));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertFalse(cache.isAssignableFrom(arrayList, list));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.size());
+    }
+
+    /** The cache is cleared when it reaches its maximum size. */
+    @Test
+    public void maximumSize() {
+        AssignableCache cache = new AssignableCache(1);
+        cache.isAssignableFrom(new Ilk.Key(Number.class), new Ilk.Key(Integer.class));
+        cache.isAssignableFrom(new Ilk.Key(Number.class), new Ilk.Key(Long.class));
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    /** The maximum size must be positive. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badMaximumSize() {
+        new AssignableCache(0);
+    }
+
+    /** Keys use the cache instance that has been set. */
+    @Test
+    public void instance() {
+        AssignableCache previous = AssignableCache.getInstance();
+        try {
+            AssignableCache cache = new AssignableCache(16);
+            AssignableCache.setInstance(cache);
+            assertTrue(new Ilk.Key(Number.class).isAssignableFrom(new Ilk.Key(Integer.class)));
+            assertEquals(1, cache.getMissCount());
+            AssignableCache.setInstance(null);
+            assertTrue(new Ilk.Key(Number.class).isAssignableFrom(new Ilk.Key(Integer.class)));
+            assertEquals(1, cache.getMissCount());
+        } finally {
+            AssignableCache.setInstance(previous);
+        }
+    }
+
+    /** Cached results do not hold their keys strongly. */
+    @Test
+    public void weak() throws InterruptedException {
+        AssignableCache cache = new AssignableCache(16);
+        Ilk.Key to = new Ilk.Key(new Types.Parameterized(List.class, null, new Type[] { AssignableCacheTest.class }));
+        Ilk.Key from = new Ilk.Key(new Types.Parameterized(ArrayList.class, null, new Type[] { AssignableCacheTest.class }));
+        assertTrue(cache.isAssignableFrom(to, from));
+        assertEquals(1, cache.size());
+        WeakReference<Ilk.Key> reference = new WeakReference<Ilk.Key>(to.intern());
+        to = null;
+        from = null;
+        for (int i = 0; i < 20 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(reference.get());
+        cache.isAssignableFrom(new Ilk.Key(Number.class), new Ilk.Key(Integer.class));
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,75 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link BoxArray} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class BoxArrayTest {
+    /** A box array is cast as a whole. */
+    @Test
+    public void cast() {
+        BoxArray array = new Ilk<List<String>>() {}.boxArray(Arrays.asList(Arrays.asList("a"), Arrays.asList("b", "c")));
+        assertEquals(2, array.size());
+        List<List<String>> lists = array.cast(new Ilk<List<String>>() {});
+        assertEquals("c", lists.get(1).get(1));
+        assertEquals(Arrays.asList("a"), array.get(0).cast(new Ilk<List<String>>() {}));
+        assertEquals(2, array.cast(Object.class).size());
+        assertEquals("{java.util.List<java.lang.String>=[[a], [b, c]]}", array.toString());
+    }
+
+    /** A box array of another type is rejected. */
+    @Test(expectedExceptions = ClassCastException.class)
+    public void wrongType() {
+        new Ilk<List<String>>() {}.boxArray(new ArrayList<List<String>>()).cast(new Ilk<List<Integer>>() {});
+    }
+
+    /** The list of cast objects cannot be modified. */
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void immutable() {
+        new Ilk<String>(String.class).boxArray(Arrays.asList("a")).cast(String.class).set(0, "b");
+    }
+
+    /** Mixed boxes are grouped by key. */
+    @Test
+    public void group() {
+        List<Ilk.Box> boxes = new ArrayList<Ilk.Box>();
+        boxes.add(new Ilk<Integer>(Integer.class).box(1));
+        boxes.add(new Ilk<String>(String.class).box("a"));
+        boxes.add(new Ilk<Integer>(Integer.class).box(2));
+        List<BoxArray> arrays = BoxArray.group(boxes);
+        assertEquals(2, arrays.size());
+        assertEquals(new Ilk.Key(Integer.class), arrays.get(0).key);
+        assertEquals(Arrays.asList(1, 2), arrays.get(0).cast(Integer.class));
+        assertEquals(Arrays.asList("a"), arrays.get(1).cast(String.class));
+    }
+
+    /** Mixed boxes are cast to a common super type. */
+    @Test
+    public void castAll() {
+        List<Ilk.Box> boxes = new ArrayList<Ilk.Box>();
+        boxes.add(new Ilk<Integer>(Integer.class).box(1));
+        boxes.add(new Ilk<Long>(Long.class).box(2L));
+        boxes.add(new Ilk<Integer>(Integer.class).box(3));
+        List<Number> numbers = BoxArray.castAll(boxes, new Ilk<Number>(Number.class));
+        assertEquals(3, numbers.size());
+        assertEquals(2L, numbers.get(1).longValue());
+    }
+
+    /** A mixed box of another type is rejected. */
+    @Test(expectedExceptions = ClassCastException.class)
+    public void castAllWrongType() {
+        List<Ilk.Box> boxes = new ArrayList<Ilk.Box>();
+        boxes.add(new Ilk<Integer>(Integer.class).box(1));
+        boxes.add(new Ilk<String>(String.class).box("a"));
+        BoxArray.castAll(boxes, new Ilk<Number>(Number.class));
+    }
+}
@@ -0,0 +1,104 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link IlkDispatcher} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkDispatcherTest {
+    /**
+     * A subscriber that records the name of the subscriber in a shared list
+     * of deliveries.
+     *
+     * @param <T>
+     *            The type of event.
+     */
+    private final static class Recorder<T> implements IlkDispatcher.Subscriber<T> {
+        /** The name of the subscriber. */
+        private final String name;
+
+        /** The shared list of deliveries. */
+        private final List<String> deliveries;
+
+        /**
+         * Create a recorder.
+         *
+         * @param name
+         *            The name of the subscriber.
+         * @param deliveries
+         *            The shared list of deliveries.
+         */
+        public Recorder(String name, List<String> deliveries) {
+            this.name = name;
+            this.deliveries = deliveries;
+        }
+
+        /**
+         * Record the delivery.
+         *
+         * @param event
+         *            The event.
+         */
+        public void receive(T event) {
+            deliveries.add(name);
+        }
+    }
+
+    /** Events are delivered to assignable subscribers in order. */
+    @Test
+    public void publish() {
+        List<String> deliveries = new ArrayList<String>();
+        IlkDispatcher dispatcher = new IlkDispatcher();
+        dispatcher.subscribe(new Ilk<List<Integer>>() {}, new Recorder<List<Integer>>("listInteger", deliveries));
+        dispatcher.subscribe(new Ilk<List<String>>() {}, new Recorder<List<String>>("listString", deliveries));
+        dispatcher.subscribe(new Ilk<Collection<? extends Number>>() {}, new Recorder<Collection<? extends Number>>("collection", deliveries));
+        dispatcher.subscribe(new Ilk<Object>(Object.class), new Recorder<Object>("object", deliveries));
+        assertEquals(4, dispatcher.size());
+        assertEquals(3, dispatcher.publish(new Ilk<ArrayList<Integer>>() {}, new ArrayList<Integer>()));
+        assertEquals(Arrays.asList("listInteger", "collection", "object"), deliveries);
+        deliveries.clear();
+        assertEquals(1, dispatcher.publish(new Ilk<String>(String.class), "Hello, World!"));
+        assertEquals(Arrays.asList("object"), deliveries);
+    }
+
+    /** Unsubscribed subscribers no longer receive events. */
+    @Test
+    public void unsubscribe() {
+        List<String> deliveries = new ArrayList<String>();
+        IlkDispatcher dispatcher = new IlkDispatcher();
+        Recorder<List<Integer>> recorder = new Recorder<List<Integer>>("listInteger", deliveries);
+        dispatcher.subscribe(new Ilk<List<Integer>>() {}, recorder);
+        Ilk.Box box = new Ilk<ArrayList<Integer>>() {}.box(new ArrayList<Integer>());
+        assertEquals(1, dispatcher.publish(box));
+        assertFalse(dispatcher.unsubscribe(new Ilk<List<String>>() {}, recorder));
+        assertFalse(dispatcher.unsubscribe(new Ilk<List<Integer>>() {}, new Recorder<List<Integer>>("listInteger", deliveries)));
+        assertTrue(dispatcher.unsubscribe(new Ilk<List<Integer>>() {}, recorder));
+        assertEquals(0, dispatcher.publish(box));
+        assertEquals(Arrays.asList("listInteger"), deliveries);
+    }
+
+    /** The subscribers of at most the maximum number of keys are cached. */
+    @Test
+    public void cacheSize() {
+        List<String> deliveries = new ArrayList<String>();
+        IlkDispatcher dispatcher = new IlkDispatcher(2);
+        dispatcher.subscribe(new Ilk<Object>(Object.class), new Recorder<Object>("object", deliveries));
+        dispatcher.publish(new Ilk<String>(String.class), "a");
+        dispatcher.publish(new Ilk<Integer>(Integer.class), 1);
+        assertEquals(2, dispatcher.getCacheSize());
+        dispatcher.publish(new Ilk<Long>(Long.class), 1L);
+        assertEquals(1, dispatcher.getCacheSize());
+        assertEquals(Arrays.asList("object", "object", "object"), deliveries);
+    }
+}
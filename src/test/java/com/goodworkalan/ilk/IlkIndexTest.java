@@ -0,0 +1,97 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link IlkIndex} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkIndexTest {
+    /**
+     * Create an index of collection types.
+     *
+     * @return An index.
+     */
+    private IlkIndex<String> newIndex() {
+        IlkIndex<String> index = new IlkIndex<String>();
+        index.add(new Ilk<ArrayList<Integer>>() {}.key, "arrayListInteger");
+        index.add(new Ilk<List<Integer>>() {}.key, "listInteger");
+        index.add(new Ilk<LinkedList<Integer>>() {}.key, "linkedListInteger");
+        index.add(new Ilk<List<String>>() {}.key, "listString");
+        index.add(new Ilk<Collection<? extends Number>>() {}.key, "collectionExtendsNumber");
+        index.add(new Ilk.Key(String.class), "string");
+        return index;
+    }
+
+    /** Find the values whose keys are assignable to a key. */
+    @Test
+    public void subtypes() {
+        IlkIndex<String> index = newIndex();
+        assertEquals(Arrays.asList("arrayListInteger", "listInteger", "linkedListInteger"), index.getSubtypes(new Ilk<List<Integer>>() {}.key));
+        assertEquals(Arrays.asList("arrayListInteger", "listInteger", "linkedListInteger", "collectionExtendsNumber"), index.getSubtypes(new Ilk<Collection<? extends Number>>() {}.key));
+        assertEquals(Collections.singletonList("string"), index.getSubtypes(new Ilk.Key(CharSequence.class)));
+        assertEquals(6, index.getSubtypes(new Ilk.Key(Object.class)).size());
+    }
+
+    /** Find the values whose keys a key is assignable to. */
+    @Test
+    public void supertypes() {
+        IlkIndex<String> index = newIndex();
+        assertEquals(Arrays.asList("arrayListInteger", "listInteger", "collectionExtendsNumber"), index.getSupertypes(new Ilk<ArrayList<Integer>>() {}.key));
+        assertEquals(Collections.singletonList("listString"), index.getSupertypes(new Ilk<ArrayList<String>>() {}.key));
+        assertTrue(index.getSupertypes(new Ilk.Key(Integer.class)).isEmpty());
+    }
+
+    /** Results are cached until the index is modified. */
+    @Test
+    public void cache() {
+        IlkIndex<String> index = newIndex();
+        List<String> values = index.getSubtypes(new Ilk<List<Integer>>() {}.key);
+        assertSame(values, index.getSubtypes(new Ilk<List<Integer>>() {}.key));
+        assertTrue(index.remove(new Ilk<List<Integer>>() {}.key, "listInteger"));
+        assertFalse(index.remove(new Ilk<List<Integer>>() {}.key, "listInteger"));
+        assertEquals(Arrays.asList("arrayListInteger", "linkedListInteger"), index.getSubtypes(new Ilk<List<Integer>>() {}.key));
+        assertEquals(5, index.size());
+    }
+
+    /** The query caches are cleared when they reach their maximum size. */
+    @Test
+    public void cacheSize() {
+        IlkIndex<String> index = new IlkIndex<String>(2);
+        index.add(new Ilk.Key(Integer.class), "integer");
+        index.getSubtypes(new Ilk.Key(Number.class));
+        index.getSubtypes(new Ilk.Key(Object.class));
+        index.getSupertypes(new Ilk.Key(Integer.class));
+        assertEquals(3, index.getCacheSize());
+        index.getSubtypes(new Ilk.Key(Comparable.class));
+        assertEquals(2, index.getCacheSize());
+        assertEquals(Collections.singletonList("integer"), index.getSubtypes(new Ilk.Key(Number.class)));
+        index.add(new Ilk.Key(Long.class), "long");
+        assertEquals(0, index.getCacheSize());
+    }
+
+    /** The maximum cache size must be positive. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badCacheSize() {
+        new IlkIndex<String>(0);
+    }
+
+    /** Keys must have a raw class. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public <T> void typeVariable() {
+        new IlkIndex<String>().add(new Ilk<T>() {}.key, "t");
+    }
+}
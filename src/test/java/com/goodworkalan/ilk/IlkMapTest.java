@@ -0,0 +1,73 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link IlkMap} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkMapTest {
+    /** Objects are retrieved by an equal super type token. */
+    @Test
+    public void putAndGet() {
+        IlkMap map = new IlkMap();
+        List<String> strings = new ArrayList<String>();
+        List<Integer> integers = new ArrayList<Integer>();
+        assertNull(map.put(new Ilk<List<String>>() {}, strings));
+        map.put(new Ilk<List<Integer>>() {}, integers);
+        assertSame(strings, map.get(new Ilk<List<String>>() {}));
+        assertSame(integers, map.get(new Ilk<List<Integer>>() {}));
+        assertNull(map.get(new Ilk<List<Number>>() {}));
+        assertEquals(2, map.size());
+    }
+
+    /** An object is only put if absent. */
+    @Test
+    public void putIfAbsent() {
+        IlkMap map = new IlkMap();
+        assertNull(map.putIfAbsent(new Ilk<String>(String.class), "a"));
+        assertEquals("a", map.putIfAbsent(new Ilk<String>(String.class), "b"));
+        assertEquals("a", map.get(new Ilk<String>(String.class)));
+    }
+
+    /** Boxes are unpacked when stored and created when retrieved. */
+    @Test
+    public void box() {
+        IlkMap map = new IlkMap();
+        map.put(new Ilk<List<String>>() {}.box(Collections.singletonList("a")));
+        assertEquals(Collections.singletonList("a"), map.get(new Ilk<List<String>>() {}));
+        Ilk.Box box = map.getBox(new Ilk<List<String>>() {}.key);
+        assertEquals(Collections.singletonList("a"), box.cast(new Ilk<List<String>>() {}));
+        assertNull(map.getBox(new Ilk<String>(String.class).key));
+    }
+
+    /** Objects are removed by an equal super type token. */
+    @Test
+    public void remove() {
+        IlkMap map = new IlkMap();
+        map.put(new Ilk<String>(String.class), "a");
+        assertTrue(map.containsKey(new Ilk.Key(String.class)));
+        assertEquals("a", map.remove(new Ilk<String>(String.class)));
+        assertFalse(map.containsKey(new Ilk.Key(String.class)));
+        map.put(new Ilk<String>(String.class), "a");
+        map.clear();
+        assertTrue(map.keySet().isEmpty());
+    }
+
+    /** Null objects are not accepted. */
+    @Test(expectedExceptions = NullPointerException.class)
+    public void putNull() {
+        new IlkMap().put(new Ilk<String>(String.class), null);
+    }
+}
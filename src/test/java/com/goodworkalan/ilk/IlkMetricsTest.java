@@ -0,0 +1,162 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.ObjectName;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link IlkMetrics} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkMetricsTest {
+    /**
+     * Sum the given histogram.
+     *
+     * @param histogram
+     *            The histogram.
+     * @return The sum of the buckets.
+     */
+    private static long sum(long[] histogram) {
+        long sum = 0;
+        for (long count : histogram) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /** Calls are counted only when metrics are enabled. */
+    @Test
+    public void calls() {
+        IlkMetrics metrics = IlkMetrics.getInstance();
+        metrics.reset();
+        Ilk.Box box = new Ilk<ArrayList<String>>() {}.box(new ArrayList<String>());
+        box.cast(new Ilk<List<String>>() {});
+        try {
+            box.cast(new Ilk<List<Integer>>() {});
+            fail();
+        } catch (ClassCastException e) {
+        }
+        Types.isAssignableFrom(Number.class, Integer.class);
+        long expected = IlkMetrics.ENABLED ? 2 : 0;
+        assertEquals(expected, metrics.getCastCount());
+        assertEquals(IlkMetrics.ENABLED ? 1 : 0, metrics.getFailedCastCount());
+        assertTrue(metrics.getAssignableCount() >= (IlkMetrics.ENABLED ? 1 : 0));
+        assertTrue(metrics.getCastMaxNanos() <= metrics.getCastNanos());
+        assertEquals(IlkMetrics.DEPTH_BUCKETS, metrics.getDepthHistogram().length);
+        if (!IlkMetrics.ENABLED) {
+            assertEquals(0, sum(metrics.getDepthHistogram()));
+        }
+        metrics.reset();
+        assertEquals(0, metrics.getCastCount());
+    }
+
+    /**
+     * Record calls with metrics enabled and exit with a non-zero status if
+     * they were not counted or if the metrics were not registered, run in a
+     * separate virtual machine by {@link IlkMetricsTest#enabled()}.
+     */
+    public static final class Enabled {
+        /**
+         * Record calls and check the metrics.
+         *
+         * @param args
+         *            The command line arguments, ignored.
+         */
+        public static void main(String[] args) throws Exception {
+            IlkMetrics metrics = IlkMetrics.getInstance();
+            Ilk.Box box = new Ilk<ArrayList<String>>() {}.box(new ArrayList<String>());
+            box.cast(new Ilk<List<String>>() {});
+            try {
+                box.cast(new Ilk<List<Integer>>() {});
+            } catch (ClassCastException e) {
+            }
+            Types.isAssignableFrom(Number.class, Integer.class);
+            Types.getActualType(Map.class, new Ilk<TreeMap<String, Integer>>() {}.key.type, new LinkedList<Map<TypeVariable<?>, Type>>());
+            check(metrics.isEnabled(), "enabled");
+            check(metrics.getCastCount() == 2, "cast count " + metrics.getCastCount());
+            check(metrics.getFailedCastCount() == 1, "failed cast count " + metrics.getFailedCastCount());
+            check(metrics.getAssignableCount() >= 1, "assignable count " + metrics.getAssignableCount());
+            check(metrics.getActualTypeCount() == 1, "actual type count " + metrics.getActualTypeCount());
+            check(metrics.getCastMaxNanos() <= metrics.getCastNanos(), "cast nanos");
+            check(sum(metrics.getDepthHistogram()) >= 4, "depth histogram");
+            ObjectName name = new ObjectName(IlkMetrics.OBJECT_NAME);
+            check(ManagementFactory.getPlatformMBeanServer().isRegistered(name), "registered");
+            Object count = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "CastCount");
+            check(Long.valueOf(2).equals(count), "MBean cast count " + count);
+            metrics.reset();
+            check(metrics.getCastCount() == 0, "reset");
+        }
+
+        /**
+         * Exit with a non-zero status and print the given message if the
+         * given condition is false.
+         *
+         * @param condition
+         *            The condition.
+         * @param message
+         *            The message.
+         */
+        private static void check(boolean condition, String message) {
+            if (!condition) {
+                System.out.println(message);
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Calls are counted and the metrics are registered when metrics are
+     * enabled, checked in a separate virtual machine since the flag is read
+     * when the class is loaded.
+     */
+    @Test
+    public void enabled() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-Dcom.goodworkalan.ilk.metrics=true", "-cp", System.getProperty("java.class.path"), Enabled.class.getName());
+        builder.redirectErrorStream(true);
+        Process process = builder.start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        InputStream in = process.getInputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        assertEquals(output.toString(), 0, process.waitFor());
+    }
+
+    /** The live key and cache sizes are reported. */
+    @Test
+    public void sizes() {
+        Ilk.Key key = new Ilk<List<String>>() {}.key.intern();
+        key.isAssignableFrom(new Ilk<ArrayList<String>>() {}.key);
+        IlkMetrics metrics = IlkMetrics.getInstance();
+        assertTrue(metrics.getKeyCount() > 0);
+        assertTrue(metrics.getAssignableCacheSize() >= 0);
+        assertTrue(metrics.getAssignableCacheHitCount() + metrics.getAssignableCacheMissCount() > 0);
+    }
+
+    /** The metrics are registered as a platform MBean only if enabled. */
+    @Test
+    public void registered() throws Exception {
+        IlkMetrics.getInstance();
+        assertEquals(IlkMetrics.ENABLED, ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName(IlkMetrics.OBJECT_NAME)));
+    }
+}
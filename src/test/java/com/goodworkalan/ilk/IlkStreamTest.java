@@ -0,0 +1,107 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link IlkOutputStream} and {@link IlkInputStream}
+ * classes.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkStreamTest {
+    /** Write and read typed records. */
+    @Test
+    public void records() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IlkOutputStream out = new IlkOutputStream(bytes);
+        for (int i = 0; i < 3; i++) {
+            out.writeObject(new Ilk<List<String>>() {}, new ArrayList<String>(Arrays.asList("a", "b")));
+            out.writeObject(new Ilk<Map<String, Integer>>() {}, new TreeMap<String, Integer>());
+        }
+        out.writeBox(new Ilk<Integer>(Integer.class).box(1));
+        out.close();
+        IlkInputStream in = new IlkInputStream(new ByteArrayInputStream(bytes.toByteArray()), getClass().getClassLoader());
+        for (int i = 0; i < 3; i++) {
+            List<String> strings = in.readObject(new Ilk<List<String>>() {});
+            assertEquals(Arrays.asList("a", "b"), strings);
+            Map<String, Integer> map = in.readObject(new Ilk<Map<String, Integer>>() {});
+            assertTrue(map.isEmpty());
+        }
+        Ilk.Box box = in.readBox();
+        assertEquals(new Ilk.Key(Integer.class), box.key);
+        assertEquals(1, box.cast(Integer.class).intValue());
+        in.close();
+    }
+
+    /** Each distinct key is written once. */
+    @Test
+    public void typeTable() throws IOException {
+        ByteArrayOutputStream once = new ByteArrayOutputStream();
+        IlkOutputStream out = new IlkOutputStream(once);
+        out.writeObject(new Ilk<List<String>>() {}, null);
+        out.close();
+        ByteArrayOutputStream twice = new ByteArrayOutputStream();
+        out = new IlkOutputStream(twice);
+        out.writeObject(new Ilk<List<String>>() {}, null);
+        out.writeObject(new Ilk<List<String>>() {}, null);
+        out.close();
+        // A block data header, a one byte table index and a null object.
+        assertEquals(4, twice.size() - once.size());
+    }
+
+    /** Reading a record as an unassignable type raises an exception. */
+    @Test
+    public void unassignable() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IlkOutputStream out = new IlkOutputStream(bytes);
+        out.writeObject(new Ilk<List<String>>() {}, new ArrayList<String>());
+        out.writeObject(new Ilk<List<String>>() {}, new ArrayList<String>());
+        out.close();
+        IlkInputStream in = new IlkInputStream(new ByteArrayInputStream(bytes.toByteArray()), getClass().getClassLoader());
+        try {
+            in.readObject(new Ilk<List<Integer>>() {});
+            fail();
+        } catch (ClassCastException e) {
+        }
+        Collection<? extends CharSequence> strings = in.readObject(new Ilk<Collection<? extends CharSequence>>() {});
+        assertTrue(strings.isEmpty());
+    }
+
+    /** Write and read typed records through channels. */
+    @Test
+    public void channels() throws IOException, ClassNotFoundException {
+        File file = File.createTempFile("ilk", ".data");
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            IlkOutputStream out = new IlkOutputStream(raf.getChannel());
+            for (int i = 0; i < 1000; i++) {
+                out.writeObject(new Ilk<Integer>(Integer.class), i);
+            }
+            out.close();
+            raf = new RandomAccessFile(file, "r");
+            IlkInputStream in = new IlkInputStream(raf.getChannel());
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(i, in.readObject(new Ilk<Integer>(Integer.class)).intValue());
+            }
+            in.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
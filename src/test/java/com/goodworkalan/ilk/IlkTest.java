@@ -26,6 +26,15 @@ import org.testng.annotations.Test;
  * @author Alan Gutierrez
  */
 public class IlkTest {
+    /**
+     * A class with a bounded type parameter.
+     *
+     * @param <N>
+     *            The number type.
+     */
+    public static class Numbered<N extends Number> {
+    }
+
     /** Test the class constructor. */
     @Test
     public void classConstructor() {
@@ -161,6 +170,83 @@ public class IlkTest {
         assertEquals(String.class, new Ilk<List<String>>() {}.key.get(0).type);
     }
 
+    /** Structurally equal keys intern to the same canonical instance. */
+    @Test
+    public void intern() {
+        Ilk.Key key = new Ilk<Map<String, List<Integer>>>() {}.key.intern();
+        assertTrue(key == new Ilk<Map<String, List<Integer>>>() {}.key.intern());
+        assertTrue(key == key.intern());
+        assertFalse(key == new Ilk<Map<String, List<Number>>>() {}.key.intern());
+    }
+
+    /** Canonical keys are still equal to keys that have not been interned. */
+    @Test
+    public void internEquality() {
+        Ilk.Key key = new Ilk<List<String>>() {}.key.intern();
+        Ilk.Key other = new Ilk<List<String>>() {}.key;
+        assertEquals(key, other);
+        assertEquals(other, key);
+        assertFalse(key.equals(new Ilk<List<Integer>>() {}.key.intern()));
+    }
+
+    /** Instances of the same subclass share a single canonical key. */
+    @Test
+    public void subclassKeyCached() {
+        Ilk.Key[] keys = new Ilk.Key[2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Ilk<Map<String, List<Integer>>>() {}.key;
+        }
+        assertTrue(keys[0] == keys[1]);
+        assertTrue(keys[0] == keys[0].intern());
+    }
+
+    /** Compose super type tokens without anonymous subclasses. */
+    @Test
+    public void of() {
+        assertEquals(new Ilk<String>() {}.key, Ilk.of(String.class).key);
+        assertEquals(new Ilk<String>() {}.key, Ilk.of((Class<?>) String.class).key);
+        assertEquals(new Ilk<Map<String, List<? extends Number>>>() {}.key, Ilk.of(Map.class, Ilk.of(String.class), Ilk.of(List.class, Ilk.wildcardExtends(Number.class))).key);
+        assertEquals(new Ilk<List<? super Integer>>() {}.key, Ilk.of(List.class, Ilk.wildcardSuper(Integer.class)).key);
+        assertEquals(new Ilk<List<?>>() {}.key, Ilk.of(List.class, Ilk.wildcard()).key);
+        assertEquals(new Ilk<Map.Entry<String, Integer>>() {}.key, Ilk.of(Map.Entry.class, Ilk.of(String.class), Ilk.of(Integer.class)).key);
+        assertEquals(new Ilk<Numbered<Integer>>() {}.key, Ilk.of(Numbered.class, Ilk.of(Integer.class)).key);
+        assertEquals(new Ilk<SortedMap<String, Integer>>() {}.key.hashCode(), Ilk.of(SortedMap.class, Ilk.of(String.class), Ilk.of(Integer.class)).key.hashCode());
+    }
+
+    /** Super type tokens of classes are shared. */
+    @Test
+    public void ofShared() {
+        assertTrue(Ilk.of(String.class) == Ilk.of(String.class));
+        assertTrue(Ilk.of(String.class).key == new Ilk.Key(String.class).intern());
+    }
+
+    /** Casts to a class test the raw class of the key. */
+    @Test
+    public void castClass() {
+        Ilk.Box box = new Ilk<ArrayList<String>>() {}.box(new ArrayList<String>());
+        assertEquals(0, box.cast(List.class).size());
+        assertTrue(box.cast(Serializable.class) instanceof ArrayList<?>);
+        assertEquals("a", new Ilk<String>(String.class).box("a").cast(CharSequence.class).toString());
+    }
+
+    /** A cast to a class that is not a super class of the raw class fails. */
+    @Test(expectedExceptions = ClassCastException.class)
+    public void castClassWrong() {
+        new Ilk<ArrayList<String>>() {}.box(new ArrayList<String>()).cast(Map.class);
+    }
+
+    /** The number of type arguments must match the number of parameters. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void ofWrongArity() {
+        Ilk.of(Map.class, Ilk.of(String.class));
+    }
+
+    /** Type arguments must be within the bounds of the type parameters. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void ofOutOfBounds() {
+        Ilk.of(Numbered.class, Ilk.of(String.class));
+    }
+
     //////////////////////////////////////////////////////////////////////////////////
     // OLD TESTS
     //////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,168 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+import com.goodworkalan.ilk.api.PublicTest;
+
+/**
+ * Unit tests for the {@link IlkWarmUp} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkWarmUpTest {
+    /** A class with generic members. */
+    public static class Generic {
+        /** A generic field. */
+        public Map<String, List<Integer>> map;
+
+        /**
+         * A generic method.
+         *
+         * @param list
+         *            A list.
+         * @return A map.
+         */
+        public Map<Integer, List<String>> method(List<Long> list) {
+            return null;
+        }
+    }
+
+    /**
+     * A class with private members and members whose types contain type
+     * variables.
+     *
+     * @param <T>
+     *            A type variable.
+     */
+    public static class Variables<T> {
+        /** A field whose type contains a type variable. */
+        public Map<String, T> map;
+
+        /** A field with an actual type. */
+        public List<Byte> list;
+
+        /** A private field. */
+        @SuppressWarnings("unused")
+        private Map<String, Short> hidden;
+
+        /**
+         * A method whose types contain type variables.
+         *
+         * @param <U>
+         *            A method type variable.
+         * @param u
+         *            A parameter.
+         * @return A map.
+         */
+        public <U> Map<U, T[]> method(List<? extends U> u) {
+            return null;
+        }
+
+        /**
+         * A private method.
+         *
+         * @return A set.
+         */
+        @SuppressWarnings("unused")
+        private Set<Short> hidden() {
+            return null;
+        }
+    }
+
+    /**
+     * Only the keys of the actual types of public members are held.
+     */
+    @Test
+    public void variables() {
+        IlkWarmUp warmUp = new IlkWarmUp();
+        IlkWarmUp.Report report = warmUp.warmUp(Collections.<Class<?>>singletonList(Variables.class));
+        assertEquals(0, report.failures.size());
+        assertEquals(1, warmUp.getKeyCount());
+    }
+
+    /** Classes are warmed and their keys held. */
+    @Test
+    public void warmUp() {
+        final AtomicInteger warmed = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            IlkWarmUp warmUp = new IlkWarmUp(pool, new IlkWarmUp.Progress() {
+                public void warmed(Class<?> type, long nanos, int completed, int total) {
+                    assertEquals(3, total);
+                    assertTrue(completed <= total);
+                    warmed.incrementAndGet();
+                }
+            });
+            List<Class<?>> classes = new ArrayList<Class<?>>();
+            classes.add(Generic.class);
+            classes.add(new Ilk<Map<Long, String>>() {}.getClass());
+            classes.add(FooMap.class);
+            IlkWarmUp.Report report = warmUp.warmUp(classes);
+            assertEquals(3, warmed.get());
+            assertEquals(3, report.classCount);
+            assertEquals(0, report.failures.size());
+            assertTrue(report.keyCount > 0);
+            assertEquals(report.keyCount, warmUp.getKeyCount());
+            assertTrue(report.toString().startsWith("Warmed 3 classes"));
+            assertEquals(0, warmUp.warmUp(classes).keyCount);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Packages are scanned on the class path. */
+    @Test
+    public void scan() throws Exception {
+        List<Class<?>> classes = IlkWarmUp.scan("com.goodworkalan.ilk.api", getClass().getClassLoader());
+        assertTrue(classes.contains(PublicTest.class));
+        IlkWarmUp.Report report = new IlkWarmUp().warmUp("com.goodworkalan.ilk.api", getClass().getClassLoader());
+        assertEquals(classes.size(), report.classCount);
+    }
+
+    /** Directories with reserved URL characters in their path are scanned. */
+    @Test
+    public void scanPlus() throws Exception {
+        File root = File.createTempFile("ilk+warm", "");
+        root.delete();
+        File directory = new File(root, "com/goodworkalan/ilk/api");
+        directory.mkdirs();
+        File file = new File(directory, "PublicTest.class");
+        try {
+            InputStream in = PublicTest.class.getResourceAsStream("PublicTest.class");
+            OutputStream out = new FileOutputStream(file);
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            out.close();
+            in.close();
+            ClassLoader classLoader = new URLClassLoader(new URL[] { root.toURI().toURL() }, null);
+            List<Class<?>> classes = IlkWarmUp.scan("com.goodworkalan.ilk.api", classLoader);
+            assertEquals(1, classes.size());
+            assertEquals(PublicTest.class.getName(), classes.get(0).getName());
+        } finally {
+            file.delete();
+            for (File parent = directory; !parent.equals(root.getParentFile()); parent = parent.getParentFile()) {
+                parent.delete();
+            }
+        }
+    }
+}
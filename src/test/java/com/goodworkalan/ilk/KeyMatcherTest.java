@@ -0,0 +1,112 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link KeyMatcher} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class KeyMatcherTest {
+    /**
+     * Create an array of keys of classes, parameterized types and
+     * parameterized types with wildcards.
+     *
+     * @return An array of keys.
+     */
+    private Ilk.Key[] keys() {
+        return new Ilk.Key[] {
+            new Ilk.Key(Object.class),
+            new Ilk.Key(Number.class),
+            new Ilk.Key(Integer.class),
+            new Ilk.Key(String.class),
+            new Ilk<List<String>>() {}.key,
+            new Ilk<ArrayList<String>>() {}.key,
+            new Ilk<List<Integer>>() {}.key,
+            new Ilk<List<Number>>() {}.key,
+            new Ilk<List<? extends Number>>() {}.key,
+            new Ilk<List<? super Integer>>() {}.key,
+            new Ilk<Map<String, Integer>>() {}.key,
+            new Ilk<TreeMap<String, Integer>>() {}.key,
+            new Ilk<FooMap<Integer, String>>() {}.key,
+            new Ilk<List<? extends List<? super List<String>>>>() {}.key,
+            new Ilk<ArrayList<ArrayList<? super List<String>>>>() {}.key,
+            new Ilk<ArrayList<ArrayList<? super Set<String>>>>() {}.key,
+            new Ilk<SuperWild<? extends String>>() {}.key,
+            new Ilk<SuperWild<String>>() {}.key
+        };
+    }
+
+    /**
+     * A compiled matcher gives the same result as the general assignability
+     * test for every pair of keys.
+     */
+    @Test
+    public void sameAsTypes() {
+        Ilk.Key[] keys = keys();
+        for (Ilk.Key to : keys) {
+            KeyMatcher matcher = to.compileMatcher();
+            for (Ilk.Key from : keys) {
+                assertEquals(Types.isAssignableFrom(to.type, from.type), matcher.isAssignableFrom(from));
+            }
+        }
+    }
+
+    /** Check some specific matches. */
+    @Test
+    public void matches() {
+        KeyMatcher matcher = new Ilk<List<? extends Number>>() {}.key.compileMatcher();
+        assertTrue(matcher.isAssignableFrom(new Ilk<ArrayList<Integer>>() {}.key));
+        assertFalse(matcher.isAssignableFrom(new Ilk<ArrayList<String>>() {}.key));
+        assertTrue(new Ilk.Key(Map.class).compileMatcher().isAssignableFrom(new Ilk<FooMap<Integer, String>>() {}.key));
+    }
+
+    /** The compiled matcher is cached by the key. */
+    @Test
+    public void cached() {
+        Ilk.Key key = new Ilk<List<String>>() {}.key;
+        assertSame(key.compileMatcher(), key.compileMatcher());
+    }
+
+    /**
+     * A matcher that actualizes a sub-type through its hierarchy gives the
+     * same result as the general assignability test when assignability is not
+     * cached.
+     */
+    @Test
+    public void actualizedSameAsTypes() {
+        AssignableCache previous = AssignableCache.getInstance();
+        try {
+            AssignableCache.setInstance(null);
+            Ilk.Key to = new Ilk<Collection<? extends Number>>() {}.key;
+            KeyMatcher matcher = to.compileMatcher();
+            Ilk.Key[] froms = new Ilk.Key[] {
+                new Ilk<ArrayList<Integer>>() {}.key,
+                new Ilk<ArrayList<String>>() {}.key,
+                new Ilk<LinkedList<Number>>() {}.key,
+                new Ilk<Set<? extends Integer>>() {}.key,
+                new Ilk<FooMap<Integer, String>>() {}.key
+            };
+            for (Ilk.Key from : froms) {
+                assertEquals(Types.isAssignableFrom(to.type, from.type), matcher.isAssignableFrom(from));
+            }
+            assertTrue(matcher.isAssignableFrom(froms[0]));
+            assertFalse(matcher.isAssignableFrom(froms[1]));
+        } finally {
+            AssignableCache.setInstance(previous);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link Members} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class MembersTest {
+    /**
+     * A class with generic fields.
+     *
+     * @param <T>
+     *            The element type.
+     */
+    public static class Holder<T> {
+        /** A list of elements. */
+        public List<T> list;
+
+        /** An array of elements. */
+        public T[] array;
+
+        /**
+         * Create a holder.
+         *
+         * @param list
+         *            A list of elements.
+         */
+        public Holder(List<T> list) {
+            this.list = list;
+        }
+    }
+
+    /** Method types are actualized through the hierarchy. */
+    @Test
+    public void methods() {
+        Members members = new Ilk<FooMap<String, Integer>>() {}.key.members();
+        assertEquals(new Ilk.Key(String.class), members.getMethod("get", Object.class).returnType);
+        Members.MethodMember put = members.getMethod("put", Object.class, Object.class);
+        assertEquals(new Ilk.Key(String.class), put.returnType);
+        assertEquals(new Ilk.Key(Integer.class), put.parameterTypes.get(0));
+        assertEquals(new Ilk.Key(String.class), put.parameterTypes.get(1));
+        assertEquals(new Ilk<Set<Map.Entry<Integer, String>>>() {}.key, members.getMethods("entrySet").get(0).returnType);
+        assertEquals(new Ilk<Comparator<? super Integer>>() {}.key, members.getMethods("comparator").get(0).returnType);
+        assertTrue(members.getMethods("nonexistent").isEmpty());
+        assertNull(members.getMethod("get", String.class));
+    }
+
+    /** Field and constructor types are actualized. */
+    @Test
+    public void fieldsAndConstructors() {
+        Members members = new Ilk<Holder<String>>() {}.key.members();
+        assertEquals(new Ilk<List<String>>() {}.key, members.getField("list").type);
+        assertEquals(new Ilk.Key(String[].class), members.getField("array").type);
+        assertEquals(2, members.getFields().size());
+        assertNull(members.getField("nonexistent"));
+        assertEquals(new Ilk<List<String>>() {}.key, members.getConstructors().get(0).parameterTypes.get(0));
+    }
+
+    /** Member tables are shared by equal keys. */
+    @Test
+    public void shared() {
+        Members members = new Ilk<ArrayList<String>>() {}.key.members();
+        assertSame(members, new Ilk.Key(new Ilk<ArrayList<String>>() {}.key.type).members());
+        assertEquals(new Ilk<Collection<? extends String>>() {}.key, members.getMethods("addAll").get(0).parameterTypes.get(members.getMethods("addAll").get(0).parameterTypes.size() - 1));
+    }
+
+    /** The table cannot be modified. */
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void immutable() {
+        new Ilk<ArrayList<String>>() {}.key.members().getMethods().clear();
+    }
+}
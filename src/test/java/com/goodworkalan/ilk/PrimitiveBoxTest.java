@@ -0,0 +1,75 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+
+import java.io.Serializable;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link IntBox}, {@link LongBox} and {@link DoubleBox}
+ * classes.
+ *
+ * @author Alan Gutierrez
+ */
+public class PrimitiveBoxTest {
+    /** Values are read without boxing. */
+    @Test
+    public void values() {
+        assertEquals(1, new IntBox(1).getInt());
+        assertEquals(2L, new LongBox(2L).getLong());
+        assertEquals(3.0, new DoubleBox(3.0).getDouble(), 0.0);
+        assertSame(IntBox.KEY, new IntBox(1).getKey());
+        assertEquals(new Ilk.Key(Long.class), LongBox.KEY);
+    }
+
+    /** Boxes convert to and from <code>Ilk.Box</code>. */
+    @Test
+    public void box() {
+        Ilk.Box box = new IntBox(7).box();
+        assertEquals(IntBox.KEY, box.key);
+        assertEquals(7, box.cast(new Ilk<Integer>() {}).intValue());
+        assertEquals(7, new IntBox(new Ilk<Integer>(Integer.class).box(7)).getInt());
+        assertEquals(8L, new LongBox(new LongBox(8L).box()).getLong());
+        assertEquals(9.0, new DoubleBox(new DoubleBox(9.0).box()).getDouble(), 0.0);
+    }
+
+    /** Boxes cast to super types of their wrapper class. */
+    @Test
+    public void cast() {
+        assertEquals(Integer.valueOf(1), new IntBox(1).cast(Number.class));
+        assertEquals(Long.valueOf(2L), new LongBox(2L).cast(new Ilk<Comparable<Long>>() {}));
+        assertEquals(Double.valueOf(3.0), new DoubleBox(3.0).cast(Serializable.class));
+    }
+
+    /** A box of another type is rejected. */
+    @Test(expectedExceptions = ClassCastException.class)
+    public void wrongBox() {
+        new IntBox(new LongBox(1L).box());
+    }
+
+    /** A box that contains null is rejected. */
+    @Test(expectedExceptions = ClassCastException.class)
+    public void nullBox() {
+        new IntBox(new Ilk<Integer>(Integer.class).box(null));
+    }
+
+    /** A box whose key has no raw class is rejected. */
+    @Test(expectedExceptions = ClassCastException.class)
+    public void variableBox() {
+        new LongBox(new Ilk.Box(new Ilk.Key(Comparable.class.getTypeParameters()[0]), 1L));
+    }
+
+    /** A cast to a class that is not a super type is rejected. */
+    @Test(expectedExceptions = ClassCastException.class)
+    public void wrongClass() {
+        new DoubleBox(1.0).cast(Integer.class);
+    }
+
+    /** A cast to a type that is not a super type is rejected. */
+    @Test(expectedExceptions = ClassCastException.class)
+    public void wrongType() {
+        new IntBox(1).cast(new Ilk<Comparable<Long>>() {});
+    }
+}
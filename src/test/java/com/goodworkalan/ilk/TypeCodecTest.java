@@ -0,0 +1,210 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link TypeCodec} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class TypeCodecTest {
+    /** A generic array type. */
+    public final List<String>[] arrayListString = null;
+
+    /**
+     * Encode the given type.
+     *
+     * @param type
+     *            The type.
+     * @return The encoded type.
+     */
+    private byte[] encode(Type type) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new TypeCodec.Encoder(new DataOutputStream(bytes)).write(type);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode the given type.
+     *
+     * @param bytes
+     *            The encoded type.
+     * @return The type.
+     */
+    private Type decode(byte[] bytes) throws IOException {
+        return new TypeCodec.Decoder(new DataInputStream(new ByteArrayInputStream(bytes)), getClass().getClassLoader()).read();
+    }
+
+    /**
+     * Encode and decode the given type.
+     *
+     * @param type
+     *            The type.
+     * @return The decoded type.
+     */
+    private Type roundTrip(Type type) throws IOException {
+        return decode(encode(type));
+    }
+
+    /** Encode and decode classes, parameterized types and wildcards. */
+    @Test
+    public void roundTrip() throws IOException {
+        Type[] types = new Type[] {
+            String.class,
+            int.class,
+            String[].class,
+            new Ilk<Map<String, List<? extends Number>>>() {}.key.type,
+            new Ilk<List<? super Integer>>() {}.key.type,
+            new Ilk<Three<String>.Four<Integer>>() {}.key.type,
+            List.class.getTypeParameters()[0]
+        };
+        for (Type type : types) {
+            assertTrue(Types.equals(type, roundTrip(type)));
+        }
+    }
+
+    /** Encode and decode generic array types. */
+    @Test
+    public void genericArray() throws Exception {
+        Type type = getClass().getField("arrayListString").getGenericType();
+        Type decoded = roundTrip(type);
+        assertTrue(decoded instanceof Types.GenericArray);
+        assertTrue(Types.equals(type, decoded));
+        assertEquals("java.util.List<java.lang.String>[]", decoded.toString());
+    }
+
+    /**
+     * A type variable of a method.
+     *
+     * @param <T>
+     *            The type variable.
+     * @return A super type token with a method type variable.
+     */
+    public <T> Ilk<List<T>> listOf() {
+        return new Ilk<List<T>>() {};
+    }
+
+    /** Encode and decode a method type variable. */
+    @Test
+    public void methodTypeVariable() throws IOException {
+        Type type = listOf().key.type;
+        assertTrue(Types.equals(type, roundTrip(type)));
+    }
+
+    /** Repeated subtrees and class names are written as references. */
+    @Test
+    public void backReferences() throws IOException {
+        int single = encode(new Ilk<Map<String, Integer>>() {}.key.type).length;
+        int repeated = encode(new Ilk<Map<Map<String, Integer>, Map<String, Integer>>>() {}.key.type).length;
+        assertTrue(repeated < single + 20);
+    }
+
+    /** Keys are serialized and deserialized as canonical keys. */
+    @Test
+    public void serializeKey() throws Exception {
+        Ilk.Key key = new Ilk<Map<String, List<? extends Number>>>() {}.key.intern();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(key);
+        out.writeObject(new Ilk<List<String>>() {}.box(null));
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertSame(key, in.readObject());
+        Ilk.Box box = (Ilk.Box) in.readObject();
+        assertSame(new Ilk<List<String>>() {}.key.intern(), box.key);
+    }
+
+    /** A back reference must refer to a subtree that has been read. */
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void badReference() throws IOException {
+        decode(new byte[] { 8, 5 });
+    }
+
+    /** A string reference must refer to a string that has been read. */
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void badStringReference() throws IOException {
+        decode(new byte[] { 1, 3 });
+    }
+
+    /** A type variable position must be a type parameter of its declaration. */
+    @Test(expectedExceptions = InvalidObjectException.class)
+    public void badPosition() throws IOException {
+        byte[] bytes = encode(List.class.getTypeParameters()[0]);
+        bytes[bytes.length - 1] = 5;
+        decode(bytes);
+    }
+
+    /** An integer must fit in a non-negative integer. */
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void negativeLength() throws IOException {
+        decode(new byte[] { 3, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F });
+    }
+
+    /** A huge length runs out of input instead of allocating an array. */
+    @Test(expectedExceptions = EOFException.class)
+    public void hugeLength() throws IOException {
+        decode(new byte[] { 3, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 });
+    }
+
+    /** Types nested deeper than the maximum depth are rejected. */
+    @Test(expectedExceptions = StreamCorruptedException.class)
+    public void tooDeep() throws IOException {
+        byte[] bytes = new byte[100000];
+        Arrays.fill(bytes, (byte) 4);
+        decode(bytes);
+    }
+
+    /** Types nested to the maximum depth are decoded. */
+    @Test
+    public void maximumDepth() throws IOException {
+        byte[] bytes = new byte[TypeCodec.MAXIMUM_DEPTH + 1];
+        Arrays.fill(bytes, (byte) 4);
+        bytes[bytes.length - 1] = 0;
+        Type type = decode(bytes);
+        for (int i = 1; i < TypeCodec.MAXIMUM_DEPTH; i++) {
+            type = ((Types.GenericArray) type).getGenericComponentType();
+        }
+        assertEquals(null, ((Types.GenericArray) type).getGenericComponentType());
+    }
+
+    /** A deserialized key with an invalid type is an invalid object. */
+    @Test(expectedExceptions = InvalidObjectException.class)
+    public void badSerializedKey() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(new Ilk<List<String>>() {}.key);
+        out.close();
+        byte[] serialized = bytes.toByteArray();
+        byte[] list = "java.util.List".getBytes("UTF-8");
+        byte[] date = "java.util.Date".getBytes("UTF-8");
+        for (int i = 0; i <= serialized.length - list.length; i++) {
+            int j = 0;
+            while (j < list.length && serialized[i + j] == list[j]) {
+                j++;
+            }
+            if (j == list.length) {
+                System.arraycopy(date, 0, serialized, i, date.length);
+            }
+        }
+        new ObjectInputStream(new ByteArrayInputStream(serialized)).readObject();
+    }
+}
@@ -0,0 +1,115 @@
+package com.goodworkalan.ilk;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.fail;
+
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the {@link TypeParser} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class TypeParserTest {
+    /** A generic array type. */
+    public final List<String>[] arrayListString = null;
+
+    /** A parameterized type with a parameterized owner type. */
+    public final Three<String>.Four<Integer> threeFour = null;
+
+    /**
+     * Create a parser that loads classes with the class loader of this test.
+     *
+     * @return A type parser.
+     */
+    private TypeParser newParser() {
+        return new TypeParser(getClass().getClassLoader(), 16);
+    }
+
+    /** Parse classes. */
+    @Test
+    public void classes() {
+        TypeParser parser = newParser();
+        assertEquals(String.class, parser.parse("java.lang.String").type);
+        assertEquals(int.class, parser.parse("int").type);
+        assertEquals(Map.Entry.class, parser.parse("java.util.Map.Entry").type);
+        assertEquals(Map.Entry.class, parser.parse("java.util.Map$Entry").type);
+        assertEquals(String[][].class, parser.parse("java.lang.String[][]").type);
+    }
+
+    /** Parse the Java source form of parameterized types. */
+    @Test
+    public void source() {
+        TypeParser parser = newParser();
+        Ilk.Key key = new Ilk<Map<String, List<? extends Number>>>() {}.key;
+        assertEquals(key, parser.parse("java.util.Map<java.lang.String, java.util.List<? extends java.lang.Number>>"));
+        assertEquals(key, parser.parse(key.toString()));
+        assertEquals(new Ilk<List<? super Integer>>() {}.key, parser.parse("java.util.List<? super java.lang.Integer>"));
+        assertEquals(new Ilk<List<?>>() {}.key, parser.parse("java.util.List<?>"));
+        assertEquals(new Ilk<Map.Entry<String, Integer>>() {}.key, parser.parse("java.util.Map.Entry<java.lang.String, java.lang.Integer>"));
+    }
+
+    /** Parse generic array types and owner types. */
+    @Test
+    public void arraysAndOwners() throws Exception {
+        TypeParser parser = newParser();
+        assertEquals(new Ilk.Key(getClass().getField("arrayListString").getGenericType()), parser.parse("java.util.List<java.lang.String>[]"));
+        Ilk.Key threeFour = new Ilk.Key(getClass().getField("threeFour").getGenericType());
+        assertEquals(threeFour, parser.parse("com.goodworkalan.ilk.Three<java.lang.String>.Four<java.lang.Integer>"));
+        assertEquals(threeFour, parser.parse("Lcom/goodworkalan/ilk/Three<Ljava/lang/String;>.Four<Ljava/lang/Integer;>;"));
+    }
+
+    /** Parse generic signatures. */
+    @Test
+    public void signature() throws Exception {
+        TypeParser parser = newParser();
+        assertEquals(new Ilk<Map<String, List<? extends Number>>>() {}.key, parser.parse("Ljava/util/Map<Ljava/lang/String;Ljava/util/List<+Ljava/lang/Number;>;>;"));
+        assertEquals(new Ilk<List<? super Integer>>() {}.key, parser.parse("Ljava/util/List<-Ljava/lang/Integer;>;"));
+        assertEquals(new Ilk<List<?>>() {}.key, parser.parse("Ljava/util/List<*>;"));
+        assertEquals(new Ilk.Key(getClass().getField("arrayListString").getGenericType()), parser.parse("[Ljava/util/List<Ljava/lang/String;>;"));
+        assertEquals(int[].class, parser.parse("[I").type);
+        assertEquals(long.class, parser.parse("J").type);
+    }
+
+    /** Parsed keys are cached and canonical. */
+    @Test
+    public void cached() {
+        TypeParser parser = newParser();
+        Ilk.Key key = parser.parse("java.util.List<java.lang.String>");
+        assertSame(key, parser.parse("java.util.List<java.lang.String>"));
+        assertSame(key, new Ilk<List<String>>() {}.key.intern());
+        assertSame(key, parser.parseIlk("java.util.List<java.lang.String>").key);
+    }
+
+    /**
+     * Assert that the given name cannot be parsed.
+     *
+     * @param parser
+     *            The type parser.
+     * @param name
+     *            The type name.
+     */
+    private void invalid(TypeParser parser, String name) {
+        try {
+            parser.parse(name);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        fail(name);
+    }
+
+    /** Reject invalid names. */
+    @Test
+    public void invalid() {
+        TypeParser parser = newParser();
+        invalid(parser, "java.util.List<java.lang.String");
+        invalid(parser, "java.util.List<java.lang.String, java.lang.String>");
+        invalid(parser, "java.lang.Nonexistent");
+        invalid(parser, "java.lang.String junk");
+        invalid(parser, "Ljava/util/List<TT;>;");
+    }
+}
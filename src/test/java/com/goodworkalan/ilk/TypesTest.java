@@ -4,16 +4,24 @@ import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertFalse;
 import static org.testng.AssertJUnit.assertNull;
 import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.lang.reflect.WildcardType;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.testng.annotations.Test;
 
@@ -52,6 +60,9 @@ public class TypesTest {
     /** An actualized generic array type. */
     public final List<Number>[] arrayListNumber = null;
     
+    /** An actualized set of nested types. */
+    public final Set<Map.Entry<Integer, String>> setEntryIntString = null;
+    
     /** A method with a generic return type. */
     public <T> T genericReturnType() {
         return null;
@@ -243,4 +254,384 @@ public class TypesTest {
         Field field = getClass().getField("mapIntString");
         assertEquals("java.util.Map<java.lang.Integer, java.lang.String>", Types.typeToString(field.getGenericType()));
     }
+
+    /** An actualized nested map type. */
+    public final Map<String, List<Map<Integer, String>>> mapStringListMap = null;
+
+    /**
+     * The hash code calculated at construction of a parameterized type built
+     * by <code>Types</code> is the same as the hash code of the equivalent
+     * parameterized type from the JDK.
+     */
+    @Test
+    public void parameterizedHashCode() throws Exception {
+        ParameterizedType pt = (ParameterizedType) getClass().getField("mapStringListMap").getGenericType();
+        Type actual = Types.getActualType(pt, new HashMap<TypeVariable<?>, Type>());
+        assertTrue(actual instanceof Types.Parameterized);
+        assertEquals(Types.hashCode(pt), Types.hashCode(actual));
+        assertTrue(Types.equals(pt, actual));
+        assertTrue(Types.equals(actual, pt));
+    }
+
+    /**
+     * The depth and node count of a parameterized type are calculated at
+     * construction.
+     */
+    @Test
+    public void parameterizedDepthAndNodeCount() throws Exception {
+        Type pt = getClass().getField("mapStringListMap").getGenericType();
+        Types.Parameterized actual = (Types.Parameterized) Types.getActualType(pt, new HashMap<TypeVariable<?>, Type>());
+        assertEquals(4, actual.getDepth());
+        assertEquals(6, actual.getNodeCount());
+        assertEquals(4, Types.getDepth(pt));
+        assertEquals(6, Types.getNodeCount(pt));
+        assertEquals("java.util.Map<java.lang.String, java.util.List<java.util.Map<java.lang.Integer, java.lang.String>>>", actual.toString());
+    }
+
+    /**
+     * The hash code of a wildcard built by <code>Types</code> is the same as
+     * the hash code of the equivalent wildcard from the JDK.
+     */
+    @Test
+    public void wildcardCachedHashCode() {
+        TypeVariable<?> tv = SuperWild.class.getTypeParameters()[0];
+        ParameterizedType pt = (ParameterizedType) tv.getBounds()[0];
+        WildcardType wt = (WildcardType) pt.getActualTypeArguments()[0];
+        Types.Wildcard wildcard = new Types.Wildcard(wt.getLowerBounds(), wt.getUpperBounds());
+        assertEquals(Types.hashCode(wt), Types.hashCode(wildcard));
+        assertEquals(2, wildcard.getDepth());
+        assertEquals(3, wildcard.getNodeCount());
+    }
+
+    /** An actualized type whose hierarchy reorders its type parameters. */
+    public final FooMap<String, Integer> fooMapStringInteger = null;
+
+    /**
+     * The hierarchy map of an actualized type assigns the type variables of
+     * every super class and implemented interface.
+     */
+    @Test
+    public void hierarchyTypes() throws Exception {
+        Map<TypeVariable<?>, Type> types = new HashMap<TypeVariable<?>, Type>();
+        Types.getHierarchTypes(types, getClass().getField("fooMapStringInteger").getGenericType());
+        assertEquals(String.class, types.get(FooMap.class.getTypeParameters()[0]));
+        assertEquals(Integer.class, types.get(TreeMap.class.getTypeParameters()[0]));
+        assertEquals(String.class, types.get(TreeMap.class.getTypeParameters()[1]));
+        assertEquals(Integer.class, types.get(SortedMap.class.getTypeParameters()[0]));
+        assertEquals(Integer.class, types.get(Map.class.getTypeParameters()[0]));
+        assertEquals(String.class, types.get(Map.class.getTypeParameters()[1]));
+    }
+
+    /**
+     * The hierarchy map of a raw class assigns the type variables of its
+     * ancestors to the type parameters of the class.
+     */
+    @Test
+    public void rawHierarchyTypes() {
+        Map<TypeVariable<?>, Type> types = new HashMap<TypeVariable<?>, Type>();
+        Types.getHierarchTypes(types, FooMap.class);
+        assertEquals(FooMap.class.getTypeParameters()[1], types.get(Map.class.getTypeParameters()[0]));
+        assertEquals(FooMap.class.getTypeParameters()[0], types.get(Map.class.getTypeParameters()[1]));
+        assertNull(types.get(FooMap.class.getTypeParameters()[0]));
+    }
+
+    /**
+     * The hierarchy map of a class that assigns actual types to the type
+     * variables of its super class.
+     */
+    @Test
+    public void actualizedHierarchyTypes() {
+        Map<TypeVariable<?>, Type> types = new HashMap<TypeVariable<?>, Type>();
+        Types.getHierarchTypes(types, ActualizedTypeParameter.class);
+        assertEquals(String.class, types.get(List.class.getTypeParameters()[0]));
+        assertEquals(String.class, types.get(Iterable.class.getTypeParameters()[0]));
+    }
+
+    /**
+     * The component type of a generic array type is actualized to an array
+     * class.
+     */
+    @Test
+    public void actualizeGenericArray() throws Exception {
+        Type array = List.class.getMethod("toArray", Object[].class).getGenericReturnType();
+        assertTrue(array instanceof GenericArrayType);
+        Map<TypeVariable<?>, Type> assignments = new HashMap<TypeVariable<?>, Type>();
+        assignments.put((TypeVariable<?>) ((GenericArrayType) array).getGenericComponentType(), String.class);
+        assertEquals(String[].class, Types.getActualType(array, assignments));
+    }
+
+    /**
+     * The component type of a generic array type is actualized to a generic
+     * array of the actualized component type.
+     */
+    @Test
+    public void actualizeGenericArrayOfParameterized() throws Exception {
+        TypeVariable<?> element = List.class.getTypeParameters()[0];
+        Type array = new Types.GenericArray(new Types.Parameterized(List.class, null, new Type[] { element }));
+        Map<TypeVariable<?>, Type> assignments = new HashMap<TypeVariable<?>, Type>();
+        assignments.put(element, String.class);
+        Type actual = Types.getActualType(array, assignments);
+        assertTrue(actual instanceof GenericArrayType);
+        assertTrue(Types.equals(getClass().getField("arrayListString").getGenericType(), actual));
+    }
+
+    /**
+     * The owner type of a nested type is kept as is when it is a class, so
+     * the entry type of an actualized map has the owner type map.
+     */
+    @Test
+    public void actualizeOwnerClass() throws Exception {
+        Type entrySet = Map.class.getMethod("entrySet").getGenericReturnType();
+        Type actual = Types.getActualType(entrySet, getClass().getField("mapIntString").getGenericType(), new LinkedList<Map<TypeVariable<?>, Type>>());
+        assertTrue(Types.equals(getClass().getField("setEntryIntString").getGenericType(), actual));
+        ParameterizedType entry = (ParameterizedType) ((ParameterizedType) actual).getActualTypeArguments()[0];
+        assertEquals(Map.class, entry.getOwnerType());
+    }
+
+    /**
+     * The internal accessors of parameterized types and wildcards implemented
+     * by <code>Types</code> share their arrays instead of copying them.
+     */
+    @Test
+    public void sharedArguments() throws Exception {
+        Type pt = getClass().getField("mapStringListMap").getGenericType();
+        Types.Parameterized actual = (Types.Parameterized) Types.getActualType(pt, new HashMap<TypeVariable<?>, Type>());
+        assertTrue(Types.getArguments(actual) == Types.getArguments(actual));
+        assertEquals(2, actual.argumentCount());
+        assertEquals(String.class, actual.argument(0));
+        Types.Wildcard wildcard = new Types.Wildcard(new Type[0], new Type[] { Number.class });
+        assertEquals(0, wildcard.lowerBoundCount());
+        assertEquals(1, wildcard.upperBoundCount());
+        assertEquals(Number.class, wildcard.upperBound(0));
+        assertTrue(Types.getUpperBounds(wildcard) == Types.getUpperBounds(wildcard));
+    }
+
+    /** Substitution returns the type itself when nothing is assigned. */
+    @Test
+    public void substituteNothing() throws Exception {
+        Type pt = Types.getActualType(getClass().getField("mapStringListMap").getGenericType(), new HashMap<TypeVariable<?>, Type>());
+        assertTrue(pt == Types.substitute(pt, Assignments.of(new HashMap<TypeVariable<?>, Type>())));
+    }
+
+    /**
+     * Create a list of lists of the given depth around the given type.
+     * 
+     * @param depth
+     *            The number of nested lists.
+     * @param type
+     *            The innermost type.
+     * @return The nested list type.
+     */
+    private Type nestedLists(int depth, Type type) {
+        for (int i = 0; i < depth; i++) {
+            type = new Types.Parameterized(List.class, null, new Type[] { type });
+        }
+        return type;
+    }
+
+    /** Deeply nested types compare, hash and actualize without recursion. */
+    @Test
+    public void deeplyNested() {
+        Type left = nestedLists(100000, String.class);
+        Type right = nestedLists(100000, String.class);
+        assertTrue(Types.equals(left, right));
+        assertFalse(Types.equals(left, nestedLists(100000, Integer.class)));
+        assertEquals(Types.hashCode(left), Types.hashCode(right));
+        TypeVariable<?> tv = List.class.getTypeParameters()[0];
+        Map<TypeVariable<?>, Type> assignments = new HashMap<TypeVariable<?>, Type>();
+        assignments.put(tv, String.class);
+        assertTrue(Types.equals(right, Types.getActualType(nestedLists(99999, List.class), assignments)));
+    }
+
+    /**
+     * Create a parameterized type that is not implemented by
+     * <code>Types</code> and so has no cached hash code or depth.
+     * 
+     * @param pt
+     *            The parameterized type to copy.
+     * @return A copy of the parameterized type.
+     */
+    private ParameterizedType foreign(final ParameterizedType pt) {
+        return new ParameterizedType() {
+            public Type[] getActualTypeArguments() {
+                return pt.getActualTypeArguments();
+            }
+
+            public Type getOwnerType() {
+                return pt.getOwnerType();
+            }
+
+            public Type getRawType() {
+                return pt.getRawType();
+            }
+        };
+    }
+
+    /**
+     * Create a list type that is not implemented by <code>Types</code> with
+     * the given type argument.
+     * 
+     * @param argument
+     *            The type argument.
+     * @return A list type.
+     */
+    private ParameterizedType foreignList(final Type argument) {
+        return new ParameterizedType() {
+            public Type[] getActualTypeArguments() {
+                return new Type[] { argument };
+            }
+
+            public Type getOwnerType() {
+                return null;
+            }
+
+            public Type getRawType() {
+                return List.class;
+            }
+        };
+    }
+
+    /**
+     * The depth and node count of deep type trees that are not implemented by
+     * <code>Types</code> are determined without recursion, so that they can
+     * be compared and hashed with an explicit stack.
+     */
+    @Test
+    public void deeplyNestedForeign() {
+        Type foreign = String.class;
+        for (int i = 0; i < 100000; i++) {
+            foreign = foreignList(foreign);
+        }
+        Type nested = nestedLists(100000, String.class);
+        assertEquals(100001, Types.getDepth(foreign));
+        assertEquals(100001, Types.getNodeCount(foreign));
+        assertEquals(100002, Types.getDepth(new Types.GenericArray(foreign)));
+        assertEquals(Types.hashCode(nested), Types.hashCode(foreign));
+        assertTrue(Types.equals(foreign, nested));
+        assertTrue(Types.equals(nested, foreign));
+        assertEquals(100002, Types.getDepth(foreignList(nested)));
+        assertEquals(100002, Types.getNodeCount(foreignList(nested)));
+    }
+
+    /**
+     * Shallow types compared and hashed by recursion and deep types visited
+     * with a stack agree with the cached hash codes.
+     */
+    @Test
+    public void recursionThreshold() {
+        for (int depth : new int[] { 2, Types.MAXIMUM_RECURSIVE_DEPTH - 1, Types.MAXIMUM_RECURSIVE_DEPTH, Types.MAXIMUM_RECURSIVE_DEPTH + 1, 100 }) {
+            ParameterizedType pt = (ParameterizedType) nestedLists(depth, String.class);
+            assertEquals(Types.hashCode(pt), Types.hashCode(foreign(pt)));
+            assertTrue(Types.equals(foreign(pt), pt));
+            assertTrue(Types.equals(pt, foreign(pt)));
+            assertFalse(Types.equals(foreign(pt), nestedLists(depth, Integer.class)));
+            assertEquals(Types.hashCode(pt), Types.hashCode(new Types.GenericArray(pt)));
+        }
+    }
+
+    /** Recursive type variable bounds hash and compare. */
+    @Test
+    public void recursiveBound() {
+        Type bound = SuperWild.class.getTypeParameters()[0].getBounds()[0];
+        Type other = SuperWild.class.getTypeParameters()[0].getBounds()[0];
+        assertTrue(Types.equals(bound, other));
+        assertEquals(Types.hashCode(bound), Types.hashCode(other));
+        assertEquals(Types.hashCode(bound), Types.hashCode(Types.getActualType(bound, new HashMap<TypeVariable<?>, Type>())));
+        Types.checkTypeVariable(SuperWild.class.getTypeParameters()[0], String.class);
+    }
+
+    /** Methods are looked up by name and number of parameters. */
+    @Test
+    public void getMethods() {
+        Method[] puts = Types.getMethods(HashMap.class, "put");
+        assertEquals(1, puts.length);
+        assertEquals("put", puts[0].getName());
+        assertFalse(puts == Types.getMethods(HashMap.class, "put"));
+        puts[0] = null;
+        assertEquals("put", Types.getMethods(HashMap.class, "put")[0].getName());
+        assertEquals(0, Types.getMethods(HashMap.class, "nonexistent").length);
+        assertEquals(1, Types.getMethods(HashMap.class, "remove", 1).length);
+        assertEquals(2, Types.getMethods(HashMap.class, "remove", 2)[0].getParameterTypes().length);
+        assertEquals(0, Types.getMethods(HashMap.class, "remove", 3).length);
+        assertEquals(0, Types.getMethods(HashMap.class, "remove", -1).length);
+    }
+
+    /** Type parameters of a method are copied for each caller. */
+    @Test
+    public void getTypeParameters() {
+        TypeVariable<?>[] parameters = Types.getTypeParameters(TypesTest.class, "genericReturnType");
+        assertEquals("T", parameters[0].getName());
+        parameters[0] = null;
+        assertEquals("T", Types.getTypeParameters(TypesTest.class, "genericReturnType")[0].getName());
+    }
+
+    /** Type parameters of a method that does not exist cannot be found. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void getTypeParametersMissing() {
+        Types.getTypeParameters(HashMap.class, "nonexistent");
+    }
+
+    /** Type parameters of an overloaded method are ambiguous. */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void getTypeParametersOverloaded() {
+        Types.getTypeParameters(HashMap.class, "remove");
+    }
+
+    /** Slot tables hold the same assignments as hierarchy maps. */
+    @Test
+    public void slots() throws Exception {
+        Type type = getClass().getField("mapIntString").getGenericType();
+        Type actualized = new Ilk<FooMap<String, Integer>>() {}.key.type;
+        Map<TypeVariable<?>, Type> map = new HashMap<TypeVariable<?>, Type>();
+        Types.getHierarchTypes(map, actualized);
+        Assignments slots = Hierarchy.getInstance(FooMap.class).instantiate(actualized);
+        for (Map.Entry<TypeVariable<?>, Type> entry : map.entrySet()) {
+            assertEquals(entry.getValue(), slots.get(entry.getKey()));
+        }
+        assertNull(slots.get(List.class.getTypeParameters()[0]));
+        assertEquals(Integer.class, slots.get(SortedMap.class.getTypeParameters()[0]));
+        assertEquals(type, Types.getActualType(Map.class, actualized, new LinkedList<Map<TypeVariable<?>, Type>>()));
+    }
+
+    /** A single assignment is made to a method type parameter. */
+    @Test
+    public void slotsMethod() throws Exception {
+        TypeVariable<?> variable = Types.getTypeParameters(TypesTest.class, "genericReturnType")[0];
+        Assignments assignments = Assignments.of(variable, String.class);
+        assertEquals(String.class, assignments.get(getClass().getMethod("genericReturnType").getTypeParameters()[0]));
+        assertNull(assignments.get(List.class.getTypeParameters()[0]));
+    }
+
+    /**
+     * The type variable assignments of the actualized type are added to the
+     * given list of assignment maps.
+     */
+    @Test
+    public void actualTypeAssignments() throws Exception {
+        Type actualized = getClass().getField("fooMapStringInteger").getGenericType();
+        LinkedList<Map<TypeVariable<?>, Type>> assignments = new LinkedList<Map<TypeVariable<?>, Type>>();
+        Types.getActualType(Map.class, actualized, assignments);
+        assertEquals(1, assignments.size());
+        Map<TypeVariable<?>, Type> map = new HashMap<TypeVariable<?>, Type>();
+        Types.getHierarchTypes(map, actualized);
+        assertEquals(map, assignments.getFirst());
+    }
+
+    /** A type variable must be declared by its generic declaration. */
+    @Test
+    public void slotsMethodUndeclared() throws Exception {
+        final Method method = getClass().getMethod("genericReturnType");
+        TypeVariable<?> variable = (TypeVariable<?>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { TypeVariable.class }, new InvocationHandler() {
+            public Object invoke(Object proxy, Method invoked, Object[] args) {
+                return invoked.getName().equals("getName") ? "U" : method;
+            }
+        });
+        try {
+            Assignments.of(variable, String.class);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("Type variable U is not declared by "));
+            return;
+        }
+        fail();
+    }
 }
@@ -0,0 +1,34 @@
+package com.goodworkalan.ilk.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the Ilk benchmarks with the garbage collection profiler so that the
+ * bytes allocated per operation are reported along with throughput and latency
+ * percentiles.
+ *
+ * @author Alan Gutierrez
+ */
+public class BenchmarkMain {
+    /**
+     * Run the benchmarks whose names match the optional regular expression
+     * given as the first argument, or all of the Ilk benchmarks.
+     *
+     * @param args
+     *            An optional benchmark name regular expression.
+     * @throws RunnerException
+     *             If the benchmarks cannot be run.
+     */
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length == 0 ? BenchmarkMain.class.getPackage().getName() + ".*" : args[0];
+        Options options = new OptionsBuilder()
+            .include(include)
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
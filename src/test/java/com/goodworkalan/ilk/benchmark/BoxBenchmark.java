@@ -0,0 +1,91 @@
+package com.goodworkalan.ilk.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.goodworkalan.ilk.Ilk;
+
+/**
+ * Benchmarks of casting the contents of boxes.
+ *
+ * @author Alan Gutierrez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoxBenchmark {
+    /** A box containing a string. */
+    private Ilk.Box string;
+
+    /** A box containing a list of strings. */
+    private Ilk.Box list;
+
+    /** The super type token to cast the list to. */
+    private Ilk<Collection<? extends CharSequence>> collection;
+
+    /** Create the boxes. */
+    @Setup
+    public void setup() {
+        string = new Ilk<String>(String.class).box("Hello, World!");
+        list = new Ilk<ArrayList<String>>() {}.box(new ArrayList<String>());
+        collection = new Ilk<Collection<? extends CharSequence>>() {};
+    }
+
+    /**
+     * Cast a box to a class.
+     *
+     * @return The boxed object.
+     */
+    @Benchmark
+    public CharSequence castClass() {
+        return string.cast(CharSequence.class);
+    }
+
+    /**
+     * Cast a box to a parameterized type.
+     *
+     * @return The boxed object.
+     */
+    @Benchmark
+    public Collection<? extends CharSequence> castIlk() {
+        return list.cast(collection);
+    }
+
+    /**
+     * Cast a box to a parameterized type in many threads.
+     *
+     * @return The boxed object.
+     */
+    @Benchmark
+    @Threads(4)
+    public Collection<? extends CharSequence> castIlkContended() {
+        return list.cast(collection);
+    }
+
+    /**
+     * Box an object.
+     *
+     * @return The box.
+     */
+    @Benchmark
+    public Ilk.Box box() {
+        return new Ilk<List<String>>() {}.box(new ArrayList<String>());
+    }
+}
@@ -0,0 +1,142 @@
+package com.goodworkalan.ilk.benchmark;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.goodworkalan.ilk.Ilk;
+
+/**
+ * Benchmarks of super type token construction and of the equality, hashing
+ * and navigation of keys.
+ *
+ * @author Alan Gutierrez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyBenchmark {
+    /** A deep parameterized key. */
+    private Ilk.Key key;
+
+    /**
+     * A structurally equal key that is not canonical, with a type that is a
+     * different instance.
+     */
+    private Ilk.Key equal;
+
+    /** A canonical key. */
+    private Ilk.Key interned;
+
+    /**
+     * Create the keys. The keys of super type tokens are canonical, so the
+     * structurally equal key is created from the type argument reflected from
+     * another anonymous subclass.
+     */
+    @Setup
+    public void setup() {
+        key = new Ilk<Map<String, List<Map<Integer, String>>>>() {}.key;
+        Class<?> subclass = new Ilk<Map<String, List<Map<Integer, String>>>>() {}.getClass();
+        equal = new Ilk.Key(((ParameterizedType) subclass.getGenericSuperclass()).getActualTypeArguments()[0]);
+        interned = new Ilk<Map<String, List<Map<Integer, String>>>>() {}.key.intern();
+    }
+
+    /**
+     * Construct a super type token from an anonymous subclass.
+     *
+     * @return The super type token.
+     */
+    @Benchmark
+    public Ilk<Map<String, List<Integer>>> constructAnonymous() {
+        return new Ilk<Map<String, List<Integer>>>() {};
+    }
+
+    /**
+     * Construct a super type token from an anonymous subclass in many
+     * threads.
+     *
+     * @return The super type token.
+     */
+    @Benchmark
+    @Threads(4)
+    public Ilk<Map<String, List<Integer>>> constructAnonymousContended() {
+        return new Ilk<Map<String, List<Integer>>>() {};
+    }
+
+    /**
+     * Test the equality of two structurally equal keys.
+     *
+     * @return The result of the equality test.
+     */
+    @Benchmark
+    public boolean equalsStructural() {
+        return key.equals(equal);
+    }
+
+    /**
+     * Test the equality of two canonical keys.
+     *
+     * @return The result of the equality test.
+     */
+    @Benchmark
+    public boolean equalsInterned() {
+        return interned.equals(equal.intern());
+    }
+
+    /**
+     * Get the hash code of a key whose hash code is cached.
+     *
+     * @return The hash code.
+     */
+    @Benchmark
+    public int hashCodeCached() {
+        return key.hashCode();
+    }
+
+    /**
+     * Get the hash code of a new key for a reflected type.
+     *
+     * @return The hash code.
+     */
+    @Benchmark
+    public int hashCodeNew() {
+        return new Ilk.Key(key.type).hashCode();
+    }
+
+    /**
+     * Intern keys in many threads.
+     *
+     * @return The canonical key.
+     */
+    @Benchmark
+    @Threads(4)
+    public Ilk.Key internContended() {
+        return new Ilk.Key(key.type).intern();
+    }
+
+    /**
+     * Get the key of a nested type argument.
+     *
+     * @return The key.
+     */
+    @Benchmark
+    public Ilk.Key get() {
+        return key.get(1).get(0);
+    }
+}
@@ -0,0 +1,181 @@
+package com.goodworkalan.ilk.benchmark;
+
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.goodworkalan.ilk.FooMap;
+import com.goodworkalan.ilk.Ilk;
+import com.goodworkalan.ilk.Types;
+
+/**
+ * Benchmarks of assignability tests, type actualization and type variable
+ * assignment across shallow and deep hierarchies.
+ *
+ * @author Alan Gutierrez
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypesBenchmark {
+    /** A class key. */
+    private Ilk.Key number;
+
+    /** A class key assignable to the number key. */
+    private Ilk.Key integer;
+
+    /** A wildcard parameterized key. */
+    private Ilk.Key listExtendsNumber;
+
+    /** A parameterized key assignable to the wildcard key. */
+    private Ilk.Key arrayListInteger;
+
+    /** A key whose raw class is an interface high in the hierarchy. */
+    private Ilk.Key mapIntegerString;
+
+    /** A key with a deep hierarchy that reorders type parameters. */
+    private Ilk.Key fooMap;
+
+    /** A token with a type variable. */
+    private Ilk<List<Object>> listOfT;
+
+    /** The type variable to assign. */
+    private TypeVariable<?> typeVariable;
+
+    /**
+     * A method with a type variable.
+     *
+     * @param <T>
+     *            The type variable.
+     * @return A super type token with a type variable.
+     */
+    public static <T> Ilk<List<T>> listOf() {
+        return new Ilk<List<T>>() {};
+    }
+
+    /** Create the keys. */
+    @Setup
+    public void setup() {
+        number = new Ilk.Key(Number.class);
+        integer = new Ilk.Key(Integer.class);
+        listExtendsNumber = new Ilk<List<? extends Number>>() {}.key;
+        arrayListInteger = new Ilk<ArrayList<Integer>>() {}.key;
+        mapIntegerString = new Ilk<Map<Integer, String>>() {}.key;
+        fooMap = new Ilk<FooMap<String, Integer>>() {}.key;
+        listOfT = TypesBenchmark.<Object>listOf();
+        typeVariable = Types.getMethods(TypesBenchmark.class, "listOf")[0].getTypeParameters()[0];
+    }
+
+    /**
+     * Test the assignability of classes.
+     *
+     * @return The result of the assignability test.
+     */
+    @Benchmark
+    public boolean isAssignableFromShallow() {
+        return Types.isAssignableFrom(number.type, integer.type);
+    }
+
+    /**
+     * Test the assignability of a parameterized type to a wildcard type.
+     *
+     * @return The result of the assignability test.
+     */
+    @Benchmark
+    public boolean isAssignableFromWildcard() {
+        return Types.isAssignableFrom(listExtendsNumber.type, arrayListInteger.type);
+    }
+
+    /**
+     * Test assignability through a deep hierarchy.
+     *
+     * @return The result of the assignability test.
+     */
+    @Benchmark
+    public boolean isAssignableFromDeep() {
+        return Types.isAssignableFrom(mapIntegerString.type, fooMap.type);
+    }
+
+    /**
+     * Test assignability through a deep hierarchy in many threads.
+     *
+     * @return The result of the assignability test.
+     */
+    @Benchmark
+    @Threads(4)
+    public boolean isAssignableFromDeepContended() {
+        return Types.isAssignableFrom(mapIntegerString.type, fooMap.type);
+    }
+
+    /**
+     * Test assignability through the key, which uses the assignability
+     * cache.
+     *
+     * @return The result of the assignability test.
+     */
+    @Benchmark
+    public boolean keyIsAssignableFrom() {
+        return mapIntegerString.isAssignableFrom(fooMap);
+    }
+
+    /**
+     * Test assignability through the key in many threads.
+     *
+     * @return The result of the assignability test.
+     */
+    @Benchmark
+    @Threads(4)
+    public boolean keyIsAssignableFromContended() {
+        return mapIntegerString.isAssignableFrom(fooMap);
+    }
+
+    /**
+     * Test assignability with a compiled matcher.
+     *
+     * @return The result of the assignability test.
+     */
+    @Benchmark
+    public boolean compiledMatcher() {
+        return mapIntegerString.compileMatcher().isAssignableFrom(fooMap);
+    }
+
+    /**
+     * Actualize a super interface through a deep hierarchy.
+     *
+     * @return The actual type.
+     */
+    @Benchmark
+    public Type getActualType() {
+        return Types.getActualType(SortedMap.class, fooMap.type, new LinkedList<Map<TypeVariable<?>, Type>>());
+    }
+
+    /**
+     * Assign a type to a type variable of a super type token.
+     *
+     * @return The new super type token.
+     */
+    @Benchmark
+    public Ilk<List<Object>> assign() {
+        return listOfT.assign(typeVariable, String.class);
+    }
+}
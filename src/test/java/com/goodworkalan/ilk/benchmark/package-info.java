@@ -0,0 +1,17 @@
+/**
+ * JMH benchmarks of the hot paths of super type tokens and type actualization.
+ * <p>
+ * The benchmarks are compiled with the unit tests, where the JMH annotation
+ * processor generates the benchmark harness. Run all of them with
+ * {@link com.goodworkalan.ilk.benchmark.BenchmarkMain BenchmarkMain}, which
+ * reports throughput, sampled latency percentiles and, through the JMH garbage
+ * collection profiler, the bytes allocated per operation. The standard JMH
+ * command line, <code>org.openjdk.jmh.Main</code>, can be used to run a subset
+ * of the benchmarks using a regular expression.
+ * <p>
+ * Benchmarks whose names end in <code>Contended</code> run in several threads
+ * at once to show the cost of any shared state under contention.
+ *
+ * @author Alan Gutierrez
+ */
+package com.goodworkalan.ilk.benchmark;
@@ -0,0 +1,137 @@
+package com.goodworkalan.ilk.processor;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.testng.annotations.Test;
+
+import com.goodworkalan.ilk.Ilk;
+
+/**
+ * Unit tests for the {@link IlkConstantProcessor} class.
+ *
+ * @author Alan Gutierrez
+ */
+public class IlkConstantProcessorTest {
+    /**
+     * Create a temporary directory.
+     *
+     * @return The directory.
+     */
+    private File createDirectory() throws IOException {
+        File directory = File.createTempFile("ilk", "");
+        directory.delete();
+        directory.mkdirs();
+        return directory;
+    }
+
+    /**
+     * Delete the given file or directory and its contents.
+     *
+     * @param file
+     *            The file.
+     */
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Compile the given source with the processor.
+     *
+     * @param directory
+     *            The directory to write the source and classes.
+     * @param source
+     *            The source of the class <code>example.Config</code>.
+     * @return True if the compilation succeeded.
+     */
+    private boolean compile(File directory, String source) throws IOException {
+        File file = new File(new File(directory, "example"), "Config.java");
+        file.getParentFile().mkdirs();
+        Writer writer = new FileWriter(file);
+        writer.write(source);
+        writer.close();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        List<String> options = Arrays.asList("-d", directory.getPath(), "-s", directory.getPath(), "-classpath", System.getProperty("java.class.path"));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, fileManager.getJavaFileObjects(file));
+        task.setProcessors(Arrays.asList(new IlkConstantProcessor()));
+        boolean success = task.call();
+        fileManager.close();
+        return success;
+    }
+
+    /** Generate constants equal to the reflected types of the fields. */
+    @Test
+    public void generate() throws Exception {
+        File directory = createDirectory();
+        try {
+            assertTrue(compile(directory,
+                    "package example;\n"
+                    + "import com.goodworkalan.ilk.IlkConstant;\n"
+                    + "import java.util.*;\n"
+                    + "public class Config {\n"
+                    + "    @IlkConstant Map<String, List<? extends Number>> stringToNumbers;\n"
+                    + "    @IlkConstant List<? super Integer> sink;\n"
+                    + "    @IlkConstant List<?> anything;\n"
+                    + "    @IlkConstant Map.Entry<String, int[]> entry;\n"
+                    + "    @IlkConstant int count;\n"
+                    + "    @IlkConstant String[] names;\n"
+                    + "    @SuppressWarnings(\"rawtypes\") @IlkConstant List raw;\n"
+                    + "}\n"));
+            ClassLoader classLoader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, getClass().getClassLoader());
+            Class<?> ilks = classLoader.loadClass("example.ConfigIlks");
+            ilks.getMethod("verify").invoke(null);
+            Ilk<?> ilk = (Ilk<?>) ilks.getField("STRING_TO_NUMBERS").get(null);
+            assertEquals(new Ilk<Map<String, List<? extends Number>>>() {}.key, ilk.key);
+            assertEquals(Ilk.class, ilk.getClass());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /** Report an error for a type variable. */
+    @Test
+    public void typeVariable() throws Exception {
+        File directory = createDirectory();
+        try {
+            assertFalse(compile(directory,
+                    "package example;\n"
+                    + "import com.goodworkalan.ilk.IlkConstant;\n"
+                    + "import java.util.*;\n"
+                    + "public class Config<T> {\n"
+                    + "    @IlkConstant List<T> list;\n"
+                    + "}\n"));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /** Convert field names into constant names. */
+    @Test
+    public void constantName() {
+        assertEquals("STRING_TO_NUMBERS", IlkConstantProcessor.getConstantName("stringToNumbers"));
+        assertEquals("URL", IlkConstantProcessor.getConstantName("URL"));
+        assertEquals("A_B", IlkConstantProcessor.getConstantName("a_b"));
+    }
+}